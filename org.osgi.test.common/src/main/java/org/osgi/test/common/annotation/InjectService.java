@@ -88,4 +88,44 @@ public @interface InjectService {
 	 */
 	long timeout() default DEFAULT_TIMEOUT;
 
+	/**
+	 * Indicate the scope over which the service tracker backing the injected
+	 * service is shared.
+	 * <p>
+	 * With the default {@link Scope#METHOD} a new tracker is opened, waited on
+	 * and closed for every test method. With {@link Scope#CLASS} or
+	 * {@link Scope#GLOBAL} the tracker for an identical injection point is
+	 * reused until the end of the test class or the test run respectively,
+	 * and the cardinality is verified when the tracker is reused and when it
+	 * is closed. Trackers are only shared between injection points whose
+	 * tests belong to the same bundle.
+	 * <p>
+	 * Test frameworks which cannot observe the end of a test class or test
+	 * run, such as the JUnit 4 {@code ServiceRule}, only support
+	 * {@link Scope#METHOD} and reject injection points with any other scope.
+	 *
+	 * @return The scope.
+	 */
+	Scope scope() default Scope.METHOD;
+
+	/**
+	 * The scope over which the service tracker backing an injected service is
+	 * shared.
+	 */
+	enum Scope {
+		/**
+		 * The tracker is opened and closed for every test method.
+		 */
+		METHOD,
+		/**
+		 * The tracker is shared by all test methods of the test class.
+		 */
+		CLASS,
+		/**
+		 * The tracker is shared by all tests of the same bundle until the end of
+		 * the test run.
+		 */
+		GLOBAL
+	}
+
 }
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.annotation;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a test class or test method which changes the bundles of the
+ * framework, for example by installing, uninstalling, starting, stopping,
+ * resolving or refreshing bundles or by changing start levels.
+ * <p>
+ * When tests run concurrently, tests marked with this annotation are run one
+ * at a time, while other tests keep running in parallel with them. The lock is
+ * held from before the test until its bundle context has been cleaned up.
+ * <p>
+ * Example:
+ *
+ * <pre>
+ * &#64;MutatesBundles
+ * &#64;Test
+ * public void test() {
+ * 	installBundle.installBundle("tb1.jar");
+ * }
+ * </pre>
+ *
+ * @see org.osgi.test.common.context.FrameworkLocks
+ */
+@Inherited
+@Target({
+	TYPE, METHOD
+})
+@Retention(RUNTIME)
+@Documented
+public @interface MutatesBundles {}
@@ -16,16 +16,19 @@
 
 package org.osgi.test.common.bitmaps;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Map;
 import java.util.function.IntFunction;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 /**
  * Useful class for producing human-friendly dumps of bit fields. Has support
  * functions for single-bit values ({@link #toString(int)} and multi-bit fields
  * {@link #maskToString(int)}.
+ * <p>
+ * The names of the bits are looked up once and kept in a table, so formatting
+ * a mask with {@link #appendTo(Appendable, int)} creates no garbage.
  */
 public class Bitmap {
 
@@ -33,6 +36,8 @@ public class Bitmap {
 	final int					KNOWN_MASK;
 	final int					UNKNOWN_MASK;
 	final IntFunction<String>	mappingFunction;
+	// the name of each bit, indexed by bit number, or null if not yet looked up
+	private final String[]		names	= new String[Integer.SIZE];
 
 	/**
 	 * Constructs a bitmap
@@ -48,6 +53,11 @@ public class Bitmap {
 			.reduce((x, y) -> x | y)
 			.getAsInt();
 		this.UNKNOWN_MASK = ~KNOWN_MASK;
+		for (int type : types) {
+			if ((type != 0) && hasSingleBit(type)) {
+				names[Integer.numberOfTrailingZeros(type)] = name(type);
+			}
+		}
 	}
 
 	public Bitmap(Map<Integer, String> mapping) {
@@ -60,6 +70,11 @@ public class Bitmap {
 			.toArray(), mapping::get);
 	}
 
+	private String name(int type) {
+		final String retval = mappingFunction.apply(type);
+		return retval == null ? "UNKNOWN" : retval;
+	}
+
 	/**
 	 * @return A mask of all known allowed values in this bit mask.
 	 */
@@ -100,8 +115,16 @@ public class Bitmap {
 			throw new IllegalArgumentException(
 				"Multiple bits set in type (" + type + ") - do you mean to use maskToString()?");
 		}
-		final String retval = mappingFunction.apply(type);
-		return retval == null ? "UNKNOWN" : retval;
+		if (type == 0) {
+			return name(type);
+		}
+		int bit = Integer.numberOfTrailingZeros(type);
+		String name = names[bit];
+		if (name == null) {
+			// bits which are not known types are looked up on first use
+			names[bit] = name = name(type);
+		}
+		return name;
 	}
 
 	/**
@@ -114,14 +137,44 @@ public class Bitmap {
 	 * @see #toString(int)
 	 */
 	public String maskToString(int mask) {
-		Stream<String> bits = IntStream.of(
-			types)
-			.filter(x -> (x & mask) != 0)
-			.mapToObj(this::toString);
+		try {
+			return appendTo(new StringBuilder(64), mask).toString();
+		} catch (IOException e) {
+			// a StringBuilder does not throw IOException
+			throw new UncheckedIOException(e);
+		}
+	}
 
+	/**
+	 * Append the string representation of the given type mask, as returned by
+	 * {@link #maskToString(int)}, to an {@code Appendable}. A
+	 * {@code StringBuilder} may be reused to format many masks.
+	 *
+	 * @param appendable the {@code Appendable} to append to.
+	 * @param mask the field being converted.
+	 * @return The specified {@code Appendable}.
+	 * @throws IOException if thrown by the {@code Appendable}.
+	 * @see #maskToString(int)
+	 */
+	public <A extends Appendable> A appendTo(A appendable, int mask) throws IOException {
+		if (appendable instanceof StringBuilder) {
+			((StringBuilder) appendable).append(mask);
+		} else {
+			appendable.append(Integer.toString(mask));
+		}
+		appendable.append(':');
+		String separator = "";
+		for (int type : types) {
+			if ((type & mask) != 0) {
+				appendable.append(separator)
+					.append(toString(type));
+				separator = " | ";
+			}
+		}
 		if ((mask & UNKNOWN_MASK) != 0) {
-			bits = Stream.concat(bits, Stream.of("UNKNOWN"));
+			appendable.append(separator)
+				.append("UNKNOWN");
 		}
-		return mask + ":" + bits.collect(Collectors.joining(" | "));
+		return appendable;
 	}
 }
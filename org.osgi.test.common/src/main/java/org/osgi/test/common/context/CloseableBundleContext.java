@@ -1,5 +1,5 @@
 /*
- * Copyright (c) OSGi Alliance (2019). All Rights Reserved.
+ * Copyright (c) OSGi Alliance (2019, 2020). All Rights Reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,8 @@
 
 package org.osgi.test.common.context;
 
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
 import static org.osgi.test.common.exceptions.ConsumerWithException.asConsumer;
 import static org.osgi.test.common.exceptions.ConsumerWithException.asConsumerIgnoreException;
 
@@ -24,11 +26,19 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Dictionary;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
@@ -36,6 +46,7 @@ import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleException;
 import org.osgi.framework.BundleListener;
+import org.osgi.framework.Constants;
 import org.osgi.framework.FrameworkListener;
 import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.InvalidSyntaxException;
@@ -44,6 +55,7 @@ import org.osgi.framework.ServiceListener;
 import org.osgi.framework.ServiceObjects;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.wiring.FrameworkWiring;
 import org.osgi.test.common.exceptions.Exceptions;
 
 public class CloseableBundleContext implements AutoCloseable, InvocationHandler {
@@ -53,40 +65,138 @@ public class CloseableBundleContext implements AutoCloseable, InvocationHandler
 	private static final Predicate<Bundle>					installed			= bundle -> (bundle.getState()
 		& Bundle.UNINSTALLED) != Bundle.UNINSTALLED;
 	private static final Consumer<Bundle>					uninstallBundle		= asConsumer(Bundle::uninstall);
+	private static final Predicate<Bundle>					started				= bundle -> (bundle.getState()
+		& (Bundle.STARTING | Bundle.ACTIVE)) != 0;
+	private static final Consumer<Bundle>					stopBundle			= asConsumer(Bundle::stop);
+	private static final Map<Method, Method>				dispatch			= dispatchTable(BundleContext.class,
+		CloseableBundleContext.class);
+	private static final long								REFRESH_TIMEOUT		= 30L;
+
+	/**
+	 * The framework or system property selecting the default
+	 * {@link CleanupMode}.
+	 */
+	public static final String								CLEANUP_MODE		= "org.osgi.test.common.context.cleanup";
+	private static final Map<String, CleanupMode>			cleanupModes		= new ConcurrentHashMap<>();
+
+	/**
+	 * The order in which the resources recorded by a
+	 * {@code CloseableBundleContext} are released on close.
+	 */
+	public enum CleanupMode {
+		/**
+		 * Uninstall bundles, unget services, unregister services and then
+		 * remove listeners, one resource at a time.
+		 */
+		SEQUENTIAL,
+		/**
+		 * Remove listeners first so that later phases do not call them, unget
+		 * and unregister services, uninstall bundles and then refresh all the
+		 * uninstalled bundles with a single {@link FrameworkWiring} call.
+		 * Closing fails with an {@link IllegalStateException} if the refresh
+		 * does not complete within 30 seconds.
+		 */
+		PHASED
+	}
+
+	/**
+	 * The phases of closing a {@code CloseableBundleContext}.
+	 */
+	public enum Phase {
+		LISTENERS,
+		SERVICES,
+		REGISTRATIONS,
+		BUNDLES,
+		REFRESH
+	}
 
 	private final BundleContext								bundleContext;
 	private final Class<?>									host;
-	private final Set<ServiceRegistration<?>>				regs				= Collections
-		.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
-	private final Set<FrameworkListener>					fwListeners			= Collections
-		.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
-	private final Set<ServiceListener>						sListeners			= Collections
-		.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
-	private final Set<BundleListener>						bListeners			= Collections
-		.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
-	private final Set<Bundle>								bundles				= Collections
-		.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
-	private final Set<ServiceReference<?>>					services			= Collections
-		.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
-	private final Set<ServiceObjects<?>>					serviceobjects		= Collections
-		.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+	private final CleanupMode								cleanupMode;
+	private final Map<Phase, Long>							timings				= Collections
+		.synchronizedMap(new EnumMap<>(Phase.class));
+	private final ResourceJournal<ServiceRegistration<?>>	regs			= new ResourceJournal<>();
+	private final ResourceJournal<FrameworkListener>		fwListeners		= new ResourceJournal<>();
+	private final ResourceJournal<ServiceListener>			sListeners		= new ResourceJournal<>();
+	private final ResourceJournal<BundleListener>			bListeners		= new ResourceJournal<>();
+	private final ResourceJournal<Bundle>					bundles			= new ResourceJournal<>();
+	private final ResourceJournal<Bundle>					retained		= new ResourceJournal<>();
+	private final ResourceJournal<ServiceReference<?>>		services		= new ResourceJournal<>();
+	private final ResourceJournal<ServiceObjects<?>>		serviceobjects	= new ResourceJournal<>();
 
 	public static BundleContext proxy(Class<?> host) {
-		return (BundleContext) Proxy.newProxyInstance(host.getClassLoader(), new Class<?>[] {
-			BundleContext.class, AutoCloseable.class
-		}, new CloseableBundleContext(host, FrameworkUtil.getBundle(host)
-			.getBundleContext()));
+		return proxy(host, FrameworkUtil.getBundle(host)
+			.getBundleContext());
 	}
 
+	/**
+	 * Return a closeable {@link BundleContext} wrapping the specified bundle
+	 * context.
+	 * <p>
+	 * The returned object delegates directly when every method of the
+	 * runtime's {@code BundleContext} interface is known, and falls back to a
+	 * {@link Proxy} otherwise.
+	 */
 	public static BundleContext proxy(Class<?> host, BundleContext bundleContext) {
+		return proxy(host, bundleContext, defaultCleanupMode(bundleContext));
+	}
+
+	/**
+	 * Return a closeable {@link BundleContext} wrapping the specified bundle
+	 * context which releases its resources using the specified mode.
+	 */
+	public static BundleContext proxy(Class<?> host, BundleContext bundleContext, CleanupMode cleanupMode) {
+		return proxy(host, bundleContext, cleanupMode, DelegatingBundleContext.complete);
+	}
+
+	/**
+	 * Return a closeable {@link BundleContext} which is a
+	 * {@link DelegatingBundleContext} if {@code delegating} is {@code true},
+	 * or a {@link Proxy} otherwise. This allows both implementations to be
+	 * tested, since the proxy is only used when the framework provides a
+	 * newer {@code BundleContext} interface.
+	 */
+	static BundleContext proxy(Class<?> host, BundleContext bundleContext, CleanupMode cleanupMode,
+		boolean delegating) {
+		CloseableBundleContext handler = new CloseableBundleContext(host, bundleContext, cleanupMode);
+		if (delegating) {
+			return new DelegatingBundleContext(handler, bundleContext);
+		}
 		return (BundleContext) Proxy.newProxyInstance(host.getClassLoader(), new Class<?>[] {
 			BundleContext.class, AutoCloseable.class
-		}, new CloseableBundleContext(host, bundleContext));
+		}, handler);
 	}
 
 	public CloseableBundleContext(Class<?> host, BundleContext bundleContext) {
+		this(host, bundleContext, defaultCleanupMode(bundleContext));
+	}
+
+	public CloseableBundleContext(Class<?> host, BundleContext bundleContext, CleanupMode cleanupMode) {
 		this.host = host;
 		this.bundleContext = bundleContext;
+		this.cleanupMode = requireNonNull(cleanupMode);
+	}
+
+	static CleanupMode defaultCleanupMode(BundleContext bundleContext) {
+		String mode = bundleContext.getProperty(CLEANUP_MODE);
+		if (mode == null) {
+			return CleanupMode.SEQUENTIAL;
+		}
+		// Every proxy reads the property, so each value is parsed only once.
+		return cleanupModes.computeIfAbsent(mode, CloseableBundleContext::parseCleanupMode);
+	}
+
+	private static CleanupMode parseCleanupMode(String mode) {
+		String name = mode.trim()
+			.toUpperCase(Locale.ROOT);
+		for (CleanupMode cleanupMode : CleanupMode.values()) {
+			if (cleanupMode.name()
+				.equals(name)) {
+				return cleanupMode;
+			}
+		}
+		throw new IllegalArgumentException("Invalid value \"" + mode + "\" for property " + CLEANUP_MODE
+			+ "; allowed values are " + Arrays.toString(CleanupMode.values()));
 	}
 
 	@Override
@@ -98,13 +208,14 @@ public class CloseableBundleContext implements AutoCloseable, InvocationHandler
 		}
 		if (method.getDeclaringClass()
 			.equals(BundleContext.class)) {
-
+			Method ourMethod = dispatch.get(method);
 			try {
-				Method ourMethod = getClass().getMethod(method.getName(), method.getParameterTypes());
-
+				if (ourMethod == null) {
+					return method.invoke(bundleContext, args);
+				}
 				return ourMethod.invoke(this, args);
-			} catch (NoSuchMethodException t) {
-				return method.invoke(bundleContext, args);
+			} catch (InvocationTargetException e) {
+				throw Exceptions.duck(e.getCause());
 			}
 		}
 		if (method.getDeclaringClass()
@@ -122,24 +233,177 @@ public class CloseableBundleContext implements AutoCloseable, InvocationHandler
 		throw new IllegalArgumentException();
 	}
 
+	/**
+	 * Map each method of the api type to the public method of the handler type
+	 * with the same signature. Methods the handler does not override are
+	 * absent, so the proxy passes them straight through to the delegate.
+	 */
+	static Map<Method, Method> dispatchTable(Class<?> api, Class<?> handler) {
+		Map<Method, Method> table = new HashMap<>();
+		for (Method method : api.getMethods()) {
+			try {
+				table.put(method, handler.getMethod(method.getName(), method.getParameterTypes()));
+			} catch (NoSuchMethodException e) {
+				// passed through to the delegate
+			}
+		}
+		return table;
+	}
+
 	public static void close(BundleContext bundleContext) {
-		CloseableBundleContext cbc = (CloseableBundleContext) Proxy.getInvocationHandler(bundleContext);
-		cbc.close();
+		handler(bundleContext).close();
+	}
+
+	/**
+	 * Return the time taken by each phase of the last close of the specified
+	 * closeable bundle context.
+	 *
+	 * @param bundleContext a bundle context returned by
+	 *            {@link #proxy(Class, BundleContext)}
+	 * @return the phase timings in nanoseconds
+	 */
+	public static Map<Phase, Long> getCleanupTimings(BundleContext bundleContext) {
+		return handler(bundleContext).getCleanupTimings();
+	}
+
+	/**
+	 * @return {@code true} if the specified bundle context was returned by
+	 *         {@link #proxy(Class, BundleContext)}.
+	 */
+	public static boolean isCloseable(BundleContext bundleContext) {
+		return (bundleContext instanceof DelegatingBundleContext) || (Proxy.isProxyClass(bundleContext.getClass())
+			&& (Proxy.getInvocationHandler(bundleContext) instanceof CloseableBundleContext));
+	}
+
+	/**
+	 * Stop, rather than uninstall, the specified bundle when the specified
+	 * closeable bundle context is closed.
+	 * <p>
+	 * This is for bundles installed outside the closeable bundle context which
+	 * are kept installed across tests, such as cached bundles, so that they do
+	 * not remain active with their services registered after the test.
+	 *
+	 * @param bundleContext a bundle context which may have been returned by
+	 *            {@link #proxy(Class, BundleContext)}
+	 * @param bundle the bundle to stop
+	 * @return {@code true} if the bundle will be stopped when the bundle
+	 *         context is closed, or {@code false} if the bundle context is not
+	 *         a closeable bundle context.
+	 */
+	public static boolean stopOnClose(BundleContext bundleContext, Bundle bundle) {
+		if (!isCloseable(bundleContext)) {
+			return false;
+		}
+		handler(bundleContext).retained.add(bundle);
+		return true;
+	}
+
+	private static CloseableBundleContext handler(BundleContext bundleContext) {
+		if (bundleContext instanceof DelegatingBundleContext) {
+			return ((DelegatingBundleContext) bundleContext).getHandler();
+		}
+		return (CloseableBundleContext) Proxy.getInvocationHandler(bundleContext);
 	}
 
 	@Override
 	public void close() {
-		bundles.stream()
+		timings.clear();
+		switch (cleanupMode) {
+			case PHASED :
+				time(Phase.LISTENERS, this::removeListeners);
+				time(Phase.SERVICES, this::ungetServices);
+				time(Phase.REGISTRATIONS, this::unregisterServices);
+				List<Bundle> uninstalled = new ArrayList<>();
+				time(Phase.BUNDLES, () -> {
+					stopRetainedBundles();
+					uninstalled.addAll(uninstallBundles());
+				});
+				time(Phase.REFRESH, () -> refreshBundles(uninstalled));
+				break;
+			case SEQUENTIAL :
+			default :
+				time(Phase.BUNDLES, () -> {
+					stopRetainedBundles();
+					uninstallBundles();
+				});
+				time(Phase.SERVICES, this::ungetServices);
+				time(Phase.REGISTRATIONS, this::unregisterServices);
+				time(Phase.LISTENERS, this::removeListeners);
+				break;
+		}
+	}
+
+	/**
+	 * @return the time taken by each phase of the last close in nanoseconds
+	 */
+	public Map<Phase, Long> getCleanupTimings() {
+		synchronized (timings) {
+			return Collections.unmodifiableMap(new EnumMap<>(timings));
+		}
+	}
+
+	private void time(Phase phase, Runnable action) {
+		long start = System.nanoTime();
+		try {
+			action.run();
+		} finally {
+			timings.put(phase, System.nanoTime() - start);
+		}
+	}
+
+	private List<Bundle> uninstallBundles() {
+		List<Bundle> uninstalled = bundles.snapshot().stream()
 			.filter(installed)
-			.forEach(uninstallBundle);
-		services.forEach(this::ungetService);
-		serviceobjects.stream()
+			.collect(toList());
+		uninstalled.forEach(uninstallBundle);
+		return uninstalled;
+	}
+
+	private void stopRetainedBundles() {
+		List<Bundle> snapshot = retained.snapshot();
+		snapshot.forEach(retained::remove);
+		snapshot.stream()
+			.filter(started)
+			.forEach(stopBundle);
+	}
+
+	private void ungetServices() {
+		services.snapshot().forEach(this::ungetService);
+		serviceobjects.snapshot().stream()
 			.map(AutoCloseable.class::cast)
 			.forEach(autoclose);
-		regs.forEach(unregisterService);
-		bListeners.forEach(bundleContext::removeBundleListener);
-		sListeners.forEach(bundleContext::removeServiceListener);
-		fwListeners.forEach(bundleContext::removeFrameworkListener);
+	}
+
+	private void unregisterServices() {
+		regs.snapshot().forEach(unregisterService);
+	}
+
+	private void removeListeners() {
+		bListeners.snapshot().forEach(bundleContext::removeBundleListener);
+		sListeners.snapshot().forEach(bundleContext::removeServiceListener);
+		fwListeners.snapshot().forEach(bundleContext::removeFrameworkListener);
+	}
+
+	private void refreshBundles(List<Bundle> uninstalled) {
+		if (uninstalled.isEmpty()) {
+			return;
+		}
+		Bundle systemBundle = bundleContext.getBundle(Constants.SYSTEM_BUNDLE_LOCATION);
+		FrameworkWiring frameworkWiring = (systemBundle != null) ? systemBundle.adapt(FrameworkWiring.class) : null;
+		if (frameworkWiring == null) {
+			return;
+		}
+		CountDownLatch refreshed = new CountDownLatch(1);
+		frameworkWiring.refreshBundles(uninstalled, event -> refreshed.countDown());
+		try {
+			if (!refreshed.await(REFRESH_TIMEOUT, TimeUnit.SECONDS)) {
+				throw new IllegalStateException("Refreshing the uninstalled bundles " + uninstalled
+					+ " did not complete within " + REFRESH_TIMEOUT + "s");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+				.interrupt();
+		}
 	}
 
 	public String delegatedToString(Object proxy) {
@@ -235,15 +499,24 @@ public class CloseableBundleContext implements AutoCloseable, InvocationHandler
 		while (bundleContext.ungetService(reference)) {}
 	}
 
-	private static class ClosableServiceObjects<S> implements AutoCloseable, InvocationHandler {
+	private static class ClosableServiceObjects<S> implements ServiceObjects<S>, AutoCloseable, InvocationHandler {
+		private static final Map<Method, Method>	dispatch	= dispatchTable(ServiceObjects.class,
+			ClosableServiceObjects.class);
+		private static final boolean				complete	= DelegatingBundleContext
+			.implementsAll(ServiceObjects.class, ClosableServiceObjects.class);
+
 		private final ServiceObjects<S>	so;
 		private final Map<S, Integer>	instances	= Collections.synchronizedMap(new IdentityHashMap<>());
 
 		@SuppressWarnings("unchecked")
 		public static <S> ServiceObjects<S> proxy(Class<?> host, ServiceObjects<S> so) {
+			ClosableServiceObjects<S> handler = new ClosableServiceObjects<>(so);
+			if (complete) {
+				return handler;
+			}
 			return (ServiceObjects<S>) Proxy.newProxyInstance(host.getClassLoader(), new Class<?>[] {
 				ServiceObjects.class, AutoCloseable.class
-			}, new ClosableServiceObjects<>(so));
+			}, handler);
 		}
 
 		public ClosableServiceObjects(ServiceObjects<S> so) {
@@ -269,14 +542,12 @@ public class CloseableBundleContext implements AutoCloseable, InvocationHandler
 			if (method.getDeclaringClass()
 				.equals(ServiceObjects.class)) {
 
+				Method ourMethod = dispatch.get(method);
 				try {
-					try {
-						Method ourMethod = getClass().getMethod(method.getName(), method.getParameterTypes());
-
-						return ourMethod.invoke(this, args);
-					} catch (NoSuchMethodException t) {
+					if (ourMethod == null) {
 						return method.invoke(so, args);
 					}
+					return ourMethod.invoke(this, args);
 				} catch (InvocationTargetException e) {
 					throw Exceptions.duck(e.getCause());
 				}
@@ -300,14 +571,34 @@ public class CloseableBundleContext implements AutoCloseable, InvocationHandler
 			return "CloseableServiceObjects[" + System.identityHashCode(proxy) + "]:" + so.toString();
 		}
 
-		@SuppressWarnings("unused")
+		@Override
+		public String toString() {
+			return delegatedToString(this);
+		}
+
+		@Override
+		public int hashCode() {
+			return so.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return so.equals(obj);
+		}
+
+		@Override
+		public ServiceReference<S> getServiceReference() {
+			return so.getServiceReference();
+		}
+
+		@Override
 		public S getService() {
 			S service = so.getService();
 			instances.merge(service, 1, (oldValue, dummy) -> oldValue + 1);
 			return service;
 		}
 
-		@SuppressWarnings("unused")
+		@Override
 		public void ungetService(S service) {
 			instances.compute(service, (key, oldValue) -> {
 				if (oldValue == null) {
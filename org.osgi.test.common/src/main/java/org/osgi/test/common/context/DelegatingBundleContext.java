@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.context;
+
+import java.io.File;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Dictionary;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceFactory;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceObjects;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * A {@link BundleContext} which calls the {@link CloseableBundleContext}
+ * directly rather than through a {@link java.lang.reflect.Proxy}.
+ * <p>
+ * Methods which the {@code CloseableBundleContext} records are routed to it;
+ * all others go straight to the delegate.
+ */
+final class DelegatingBundleContext implements BundleContext, AutoCloseable {
+	/**
+	 * {@code true} if this class implements every method of the
+	 * {@code BundleContext} interface present at runtime. When the framework
+	 * provides a newer interface with methods unknown to this class, the proxy
+	 * must be used instead.
+	 */
+	static final boolean					complete	= implementsAll(BundleContext.class,
+		DelegatingBundleContext.class);
+
+	private final CloseableBundleContext	handler;
+	private final BundleContext				bundleContext;
+
+	DelegatingBundleContext(CloseableBundleContext handler, BundleContext bundleContext) {
+		this.handler = handler;
+		this.bundleContext = bundleContext;
+	}
+
+	static boolean implementsAll(Class<?> api, Class<?> impl) {
+		for (Method method : api.getMethods()) {
+			if (method.isDefault() || Modifier.isStatic(method.getModifiers())) {
+				continue;
+			}
+			try {
+				if (Modifier.isAbstract(impl.getMethod(method.getName(), method.getParameterTypes())
+					.getModifiers())) {
+					return false;
+				}
+			} catch (NoSuchMethodException e) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	CloseableBundleContext getHandler() {
+		return handler;
+	}
+
+	@Override
+	public void close() {
+		handler.close();
+	}
+
+	@Override
+	public String toString() {
+		return handler.delegatedToString(this);
+	}
+
+	@Override
+	public int hashCode() {
+		return bundleContext.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return bundleContext.equals(obj);
+	}
+
+	@Override
+	public String getProperty(String key) {
+		return bundleContext.getProperty(key);
+	}
+
+	@Override
+	public Bundle getBundle() {
+		return bundleContext.getBundle();
+	}
+
+	@Override
+	public Bundle installBundle(String location, InputStream input) throws BundleException {
+		return handler.installBundle(location, input);
+	}
+
+	@Override
+	public Bundle installBundle(String location) throws BundleException {
+		return handler.installBundle(location);
+	}
+
+	@Override
+	public Bundle getBundle(long id) {
+		return bundleContext.getBundle(id);
+	}
+
+	@Override
+	public Bundle[] getBundles() {
+		return bundleContext.getBundles();
+	}
+
+	@Override
+	public void addServiceListener(ServiceListener listener, String filter) throws InvalidSyntaxException {
+		handler.addServiceListener(listener, filter);
+	}
+
+	@Override
+	public void addServiceListener(ServiceListener listener) {
+		handler.addServiceListener(listener);
+	}
+
+	@Override
+	public void removeServiceListener(ServiceListener listener) {
+		handler.removeServiceListener(listener);
+	}
+
+	@Override
+	public void addBundleListener(BundleListener listener) {
+		handler.addBundleListener(listener);
+	}
+
+	@Override
+	public void removeBundleListener(BundleListener listener) {
+		handler.removeBundleListener(listener);
+	}
+
+	@Override
+	public void addFrameworkListener(FrameworkListener listener) {
+		handler.addFrameworkListener(listener);
+	}
+
+	@Override
+	public void removeFrameworkListener(FrameworkListener listener) {
+		handler.removeFrameworkListener(listener);
+	}
+
+	@Override
+	public ServiceRegistration<?> registerService(String[] clazzes, Object service,
+		Dictionary<String, ?> properties) {
+		return handler.registerService(clazzes, service, properties);
+	}
+
+	@Override
+	public ServiceRegistration<?> registerService(String clazz, Object service, Dictionary<String, ?> properties) {
+		return handler.registerService(clazz, service, properties);
+	}
+
+	@Override
+	public <S> ServiceRegistration<S> registerService(Class<S> clazz, S service, Dictionary<String, ?> properties) {
+		return handler.registerService(clazz, service, properties);
+	}
+
+	@Override
+	public <S> ServiceRegistration<S> registerService(Class<S> clazz, ServiceFactory<S> factory,
+		Dictionary<String, ?> properties) {
+		return handler.registerService(clazz, factory, properties);
+	}
+
+	@Override
+	public ServiceReference<?>[] getServiceReferences(String clazz, String filter) throws InvalidSyntaxException {
+		return bundleContext.getServiceReferences(clazz, filter);
+	}
+
+	@Override
+	public ServiceReference<?>[] getAllServiceReferences(String clazz, String filter)
+		throws InvalidSyntaxException {
+		return bundleContext.getAllServiceReferences(clazz, filter);
+	}
+
+	@Override
+	public ServiceReference<?> getServiceReference(String clazz) {
+		return bundleContext.getServiceReference(clazz);
+	}
+
+	@Override
+	public <S> ServiceReference<S> getServiceReference(Class<S> clazz) {
+		return bundleContext.getServiceReference(clazz);
+	}
+
+	@Override
+	public <S> Collection<ServiceReference<S>> getServiceReferences(Class<S> clazz, String filter)
+		throws InvalidSyntaxException {
+		return bundleContext.getServiceReferences(clazz, filter);
+	}
+
+	@Override
+	public <S> S getService(ServiceReference<S> reference) {
+		return handler.getService(reference);
+	}
+
+	@Override
+	public boolean ungetService(ServiceReference<?> reference) {
+		return bundleContext.ungetService(reference);
+	}
+
+	@Override
+	public <S> ServiceObjects<S> getServiceObjects(ServiceReference<S> reference) {
+		return handler.getServiceObjects(reference);
+	}
+
+	@Override
+	public File getDataFile(String filename) {
+		return bundleContext.getDataFile(filename);
+	}
+
+	@Override
+	public Filter createFilter(String filter) throws InvalidSyntaxException {
+		return bundleContext.createFilter(filter);
+	}
+
+	@Override
+	public Bundle getBundle(String location) {
+		return bundleContext.getBundle(location);
+	}
+}
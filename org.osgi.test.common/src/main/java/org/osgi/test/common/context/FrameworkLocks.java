@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.context;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ManagedBlocker;
+import java.util.concurrent.locks.StampedLock;
+
+import org.osgi.test.common.annotation.MutatesBundles;
+import org.osgi.test.common.annotation.MutatesServices;
+
+/**
+ * Locks serialising tests which change state shared by all tests running in
+ * the framework, as declared with {@link MutatesBundles} and
+ * {@link MutatesServices}.
+ * <p>
+ * Service types are mapped onto a fixed number of striped locks, so tests
+ * changing services of different types usually run concurrently. Locks are
+ * always acquired in the same order, bundles first, so tests holding several
+ * of them cannot deadlock. The locks are not reentrant and not owned by a
+ * thread: a test acquires them once, for example before the test, and may
+ * release them on another thread.
+ * <p>
+ * A thread waiting for a lock blocks through
+ * {@link ForkJoinPool#managedBlock(ManagedBlocker)}, so a fork join pool
+ * running tests in parallel, as JUnit 5 does, compensates for its blocked
+ * workers and keeps running other tests.
+ * <p>
+ * Test frameworks with locks of their own, such as the JUnit 5 resource locks,
+ * may pass the corresponding {@link Mode}s to
+ * {@link #lock(Class, Method, Mode, Mode)} so that tests using either kind of
+ * lock exclude each other.
+ */
+public final class FrameworkLocks {
+	private static final int				STRIPES		= 64;
+	private static final StampedLock		bundles		= new StampedLock();
+	// write locked for all service types, read locked for some types
+	private static final StampedLock		services	= new StampedLock();
+	private static final StampedLock[]		stripes		= new StampedLock[STRIPES];
+	static {
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new StampedLock();
+		}
+	}
+
+	/**
+	 * The mode in which the bundles or all services are locked.
+	 */
+	public enum Mode {
+		/**
+		 * Shared with other readers, excluding tests which change the state.
+		 */
+		READ,
+		/**
+		 * Exclusive, for tests which change the state.
+		 */
+		WRITE
+	}
+
+	/**
+	 * Held locks, released when closed.
+	 */
+	public interface Locks extends AutoCloseable {
+		/**
+		 * @return {@code true} if no locks are held.
+		 */
+		boolean isEmpty();
+
+		@Override
+		void close();
+	}
+
+	private FrameworkLocks() {}
+
+	/**
+	 * Acquire the locks declared by the annotations of the specified test
+	 * method, its test class, the superclasses of the test class and, for
+	 * inner classes, the enclosing classes.
+	 *
+	 * @param testClass The test class.
+	 * @param testMethod The test method, or {@code null} for the locks of the
+	 *            test class only.
+	 * @return The held locks.
+	 * @throws InterruptedException If interrupted while waiting for a lock. No
+	 *             locks are held then.
+	 */
+	public static Locks lock(Class<?> testClass, Method testMethod) throws InterruptedException {
+		return lock(testClass, testMethod, null, null);
+	}
+
+	/**
+	 * Acquire the locks declared by the annotations of the specified test
+	 * method, its test class, the superclasses of the test class and, for
+	 * inner classes, the enclosing classes, together with the specified locks
+	 * on the bundles and on all services.
+	 *
+	 * @param testClass The test class.
+	 * @param testMethod The test method, or {@code null} for the locks of the
+	 *            test class only.
+	 * @param bundlesMode The mode in which to lock the bundles in addition to
+	 *            the annotations, or {@code null}.
+	 * @param servicesMode The mode in which to lock all services in addition
+	 *            to the annotations, or {@code null}.
+	 * @return The held locks.
+	 * @throws InterruptedException If interrupted while waiting for a lock. No
+	 *             locks are held then.
+	 */
+	public static Locks lock(Class<?> testClass, Method testMethod, Mode bundlesMode, Mode servicesMode)
+		throws InterruptedException {
+		List<AnnotatedElement> elements = new ArrayList<>();
+		if (testMethod != null) {
+			elements.add(testMethod);
+		}
+		for (Class<?> c = testClass; c != null; c = Modifier.isStatic(c.getModifiers()) ? null
+			: c.getEnclosingClass()) {
+			elements.add(c);
+		}
+
+		boolean lockBundles = bundlesMode == Mode.WRITE;
+		boolean lockAllServices = servicesMode == Mode.WRITE;
+		SortedSet<Integer> serviceStripes = new TreeSet<>();
+		for (AnnotatedElement element : elements) {
+			lockBundles |= element.isAnnotationPresent(MutatesBundles.class);
+			MutatesServices mutatesServices = element.getAnnotation(MutatesServices.class);
+			if (mutatesServices != null) {
+				Class<?>[] types = mutatesServices.type();
+				if (types.length == 0) {
+					lockAllServices = true;
+				}
+				for (Class<?> type : types) {
+					serviceStripes.add(stripe(type.getName()));
+				}
+			}
+		}
+
+		HeldLocks held = new HeldLocks();
+		try {
+			if (lockBundles) {
+				held.acquire(bundles, true);
+			} else if (bundlesMode == Mode.READ) {
+				held.acquire(bundles, false);
+			}
+			if (lockAllServices) {
+				held.acquire(services, true);
+			} else if (servicesMode == Mode.READ) {
+				// read all stripes to exclude tests changing any service type
+				held.acquire(services, false);
+				for (int stripe = 0; stripe < STRIPES; stripe++) {
+					held.acquire(stripes[stripe], serviceStripes.contains(stripe));
+				}
+			} else if (!serviceStripes.isEmpty()) {
+				held.acquire(services, false);
+				for (int stripe : serviceStripes) {
+					held.acquire(stripes[stripe], true);
+				}
+			}
+		} catch (InterruptedException e) {
+			held.close();
+			throw e;
+		}
+		return held;
+	}
+
+	static int stripe(String serviceType) {
+		int h = serviceType.hashCode();
+		return (h ^ (h >>> 16)) & (STRIPES - 1);
+	}
+
+	private static final class HeldLocks implements Locks {
+		private final Deque<Runnable> unlocks = new ArrayDeque<>();
+
+		void acquire(StampedLock lock, boolean write) throws InterruptedException {
+			Acquire acquire = new Acquire(lock, write);
+			ForkJoinPool.managedBlock(acquire);
+			long stamp = acquire.stamp;
+			synchronized (unlocks) {
+				unlocks.push(write ? () -> lock.unlockWrite(stamp) : () -> lock.unlockRead(stamp));
+			}
+		}
+
+		@Override
+		public boolean isEmpty() {
+			synchronized (unlocks) {
+				return unlocks.isEmpty();
+			}
+		}
+
+		@Override
+		public void close() {
+			synchronized (unlocks) {
+				for (Runnable unlock; (unlock = unlocks.poll()) != null;) {
+					unlock.run();
+				}
+			}
+		}
+	}
+
+	private static final class Acquire implements ManagedBlocker {
+		private final StampedLock	lock;
+		private final boolean		write;
+		long						stamp;
+
+		Acquire(StampedLock lock, boolean write) {
+			this.lock = lock;
+			this.write = write;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			if (stamp == 0L) {
+				stamp = write ? lock.tryWriteLock() : lock.tryReadLock();
+			}
+			return stamp != 0L;
+		}
+
+		@Override
+		public boolean block() throws InterruptedException {
+			if (stamp == 0L) {
+				stamp = write ? lock.writeLockInterruptibly() : lock.readLockInterruptibly();
+			}
+			return true;
+		}
+	}
+}
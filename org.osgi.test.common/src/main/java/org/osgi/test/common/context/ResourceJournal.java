@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A journal of the resources recorded by a {@link CloseableBundleContext},
+ * which may be recorded from many threads without a lock on the whole journal.
+ * Recording a resource only locks the bin of the concurrent map the resource
+ * hashes to.
+ * <p>
+ * Each live resource has a single entry, found through a concurrent map and
+ * linked into a log in the order the resources were recorded. Recording a
+ * resource again does not grow the journal. Removing a resource marks its
+ * entry with a tombstone, so a concurrent {@link #snapshot()} never returns a
+ * resource once its removal has completed. Tombstoned entries are unlinked
+ * from the log in a single pass once they outnumber the live entries. Resources are
+ * compared by identity.
+ *
+ * @param <E> The resource type.
+ */
+final class ResourceJournal<E> {
+	private static final class Entry<E> {
+		final E				resource;
+		volatile boolean	removed;
+
+		Entry(E resource) {
+			this.resource = resource;
+		}
+	}
+
+	private static final class IdentityKey {
+		private final Object resource;
+
+		IdentityKey(Object resource) {
+			this.resource = resource;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(resource);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return (obj instanceof IdentityKey) && (((IdentityKey) obj).resource == resource);
+		}
+	}
+
+	private final ConcurrentMap<IdentityKey, Entry<E>>	entries		= new ConcurrentHashMap<>();
+	private final ConcurrentLinkedQueue<Entry<E>>		log			= new ConcurrentLinkedQueue<>();
+	private final AtomicInteger							tombstones	= new AtomicInteger();
+
+	void add(E resource) {
+		entries.computeIfAbsent(new IdentityKey(resource), key -> {
+			Entry<E> entry = new Entry<>(resource);
+			log.offer(entry);
+			return entry;
+		});
+	}
+
+	void remove(E resource) {
+		Entry<E> entry = entries.remove(new IdentityKey(resource));
+		if (entry == null) {
+			return;
+		}
+		entry.removed = true;
+		if (tombstones.incrementAndGet() > entries.size()) {
+			tombstones.set(0);
+			log.removeIf(e -> e.removed);
+		}
+	}
+
+	/**
+	 * @return The live resources in the order they were recorded.
+	 */
+	List<E> snapshot() {
+		List<E> resources = new ArrayList<>(entries.size());
+		for (Entry<E> entry : log) {
+			if (!entry.removed) {
+				resources.add(entry.resource);
+			}
+		}
+		return resources;
+	}
+
+	boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	/**
+	 * @return The number of entries linked into the log, including tombstoned
+	 *         entries which have not yet been unlinked.
+	 */
+	int logSize() {
+		return log.size();
+	}
+}
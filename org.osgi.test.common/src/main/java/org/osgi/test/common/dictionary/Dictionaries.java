@@ -26,14 +26,10 @@ import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.function.Supplier;
-import java.util.stream.Collector;
-import java.util.stream.Collectors;
 
 import org.osgi.test.common.stream.MapStream;
 
@@ -418,32 +414,75 @@ public class Dictionaries {
 	}
 
 	public static <K, V> Dictionary<K, V> dictionaryOf() {
-		return new MapAsDictionary<>(Collections.emptyMap());
+		return ImmutableDictionary.empty();
 	}
 
 	public static <K, V> Dictionary<K, V> dictionaryOf(K k1, V v1) {
-		return MapStream.of(k1, v1)
-			.collect(toDictionary());
+		return new ImmutableDictionary<>(new Object[] {
+			k1, v1
+		}, 1);
 	}
 
 	public static <K, V> Dictionary<K, V> dictionaryOf(K k1, V v1, K k2, V v2) {
-		return MapStream.of(k1, v1, k2, v2)
-			.collect(toDictionary());
+		return new ImmutableDictionary<>(new Object[] {
+			k1, v1, k2, v2
+		}, 2);
 	}
 
 	public static <K, V> Dictionary<K, V> dictionaryOf(K k1, V v1, K k2, V v2, K k3, V v3) {
-		return MapStream.of(k1, v1, k2, v2, k3, v3)
-			.collect(toDictionary());
+		return new ImmutableDictionary<>(new Object[] {
+			k1, v1, k2, v2, k3, v3
+		}, 3);
 	}
 
 	public static <K, V> Dictionary<K, V> dictionaryOf(K k1, V v1, K k2, V v2, K k3, V v3, K k4, V v4) {
-		return MapStream.of(k1, v1, k2, v2, k3, v3, k4, v4)
-			.collect(toDictionary());
+		return new ImmutableDictionary<>(new Object[] {
+			k1, v1, k2, v2, k3, v3, k4, v4
+		}, 4);
 	}
 
-	private static <K, V> Collector<? super Map.Entry<? extends K, ? extends V>, ?, Dictionary<K, V>> toDictionary() {
-		return Collectors.collectingAndThen(MapStream.toMap((u, v) -> {
-			throw new IllegalArgumentException("duplicate keys");
-		}, (Supplier<Map<K, V>>) LinkedHashMap::new), map -> new MapAsDictionary<>(Collections.unmodifiableMap(map)));
+	/**
+	 * Return an immutable dictionary of the specified properties whose keys
+	 * are compared ignoring case, as the framework compares service property
+	 * keys.
+	 * <p>
+	 * The keys keep their case and their case insensitive hashes are computed
+	 * once, so that the dictionary can be reused for many service
+	 * registrations and property updates without normalizing its keys again.
+	 * A {@link Dictionary} can be passed using {@link #asMap(Dictionary)}.
+	 *
+	 * @param <V> The type of the values.
+	 * @param properties The properties.
+	 * @return An immutable, case insensitive dictionary which is also a
+	 *         {@link Map}.
+	 * @throws NullPointerException if a key or value is {@code null}.
+	 * @throws IllegalArgumentException if two keys are equal ignoring case.
+	 */
+	public static <V> Dictionary<String, V> caseInsensitive(Map<String, ? extends V> properties) {
+		if ((properties instanceof ImmutableDictionary)
+			&& ((ImmutableDictionary<?, ?>) properties).isCaseInsensitive()) {
+			@SuppressWarnings("unchecked")
+			Dictionary<String, V> coerced = (Dictionary<String, V>) properties;
+			return coerced;
+		}
+		Object[] entries = new Object[2 * properties.size()];
+		int size = 0;
+		for (Map.Entry<String, ? extends V> entry : properties.entrySet()) {
+			entries[2 * size] = entry.getKey();
+			entries[2 * size + 1] = entry.getValue();
+			size++;
+		}
+		return new ImmutableDictionary<>(entries, size, true);
+	}
+
+	/**
+	 * Return a builder for immutable dictionaries of any size.
+	 *
+	 * @param <K> The type of the keys.
+	 * @param <V> The type of the values.
+	 * @return A new dictionary builder.
+	 */
+	public static <K, V> DictionaryBuilder<K, V> dictionaryBuilder() {
+		return new DictionaryBuilder<>();
 	}
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.dictionary;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+import java.util.Dictionary;
+import java.util.Map;
+
+/**
+ * Builds immutable dictionaries of any size.
+ * <p>
+ * The built dictionaries are also maps, iterate their keys in the order they
+ * were put and reject all modification.
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ * @see Dictionaries#dictionaryBuilder()
+ */
+public final class DictionaryBuilder<K, V> {
+	private Object[]	entries	= new Object[8];
+	private int			size;
+
+	DictionaryBuilder() {}
+
+	/**
+	 * Add a key and value.
+	 *
+	 * @param key The key.
+	 * @param value The value.
+	 * @return this builder
+	 * @throws NullPointerException if the key or value is {@code null}.
+	 */
+	public DictionaryBuilder<K, V> put(K key, V value) {
+		requireNonNull(key, "a Dictionary cannot contain a null key");
+		requireNonNull(value, "a Dictionary cannot contain a null value");
+		if (2 * size == entries.length) {
+			entries = Arrays.copyOf(entries, entries.length * 2);
+		}
+		entries[2 * size] = key;
+		entries[2 * size + 1] = value;
+		size++;
+		return this;
+	}
+
+	/**
+	 * Add the keys and values of the specified map.
+	 *
+	 * @param map The map.
+	 * @return this builder
+	 * @throws NullPointerException if a key or value is {@code null}.
+	 */
+	public DictionaryBuilder<K, V> putAll(Map<? extends K, ? extends V> map) {
+		map.forEach(this::put);
+		return this;
+	}
+
+	/**
+	 * Build an immutable dictionary of the keys and values added so far. The
+	 * builder may be used again afterwards.
+	 *
+	 * @return An immutable dictionary which is also a {@link Map}.
+	 * @throws IllegalArgumentException if a key was added more than once.
+	 */
+	public Dictionary<K, V> build() {
+		if (size == 0) {
+			return ImmutableDictionary.empty();
+		}
+		return new ImmutableDictionary<>(Arrays.copyOf(entries, 2 * size), size);
+	}
+}
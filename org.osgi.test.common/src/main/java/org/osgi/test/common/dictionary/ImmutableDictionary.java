@@ -0,0 +1,443 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.dictionary;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable dictionary, which is also a map, holding its keys and values
+ * in a single array in insertion order.
+ * <p>
+ * Small dictionaries are searched linearly. Larger dictionaries also hold an
+ * open addressing hash table of indexes into the array.
+ * <p>
+ * A case insensitive dictionary has {@code String} keys which are compared
+ * ignoring case, as the framework compares service property keys. The keys
+ * keep their case and their case insensitive hashes are computed once, when
+ * the dictionary is created.
+ */
+final class ImmutableDictionary<K, V> extends Dictionary<K, V> implements Map<K, V> {
+	/**
+	 * Dictionaries with more keys than this have a hash table.
+	 */
+	static final int								LINEAR_MAX	= 8;
+
+	private static final ImmutableDictionary<?, ?>	EMPTY		= new ImmutableDictionary<>(new Object[0], 0);
+
+	// key at 2 * i, value at 2 * i + 1
+	private final Object[]							entries;
+	private final int								size;
+	// the case insensitive hash of each key, or null if case sensitive
+	private final int[]								hashes;
+	// 1 + the index of the key in entries / 2, or 0 for an empty slot
+	private final int[]								hashTable;
+
+	@SuppressWarnings("unchecked")
+	static <K, V> ImmutableDictionary<K, V> empty() {
+		return (ImmutableDictionary<K, V>) EMPTY;
+	}
+
+	/**
+	 * Create a dictionary holding the specified alternating keys and values.
+	 *
+	 * @param entries The keys and values. The array is not copied and must not
+	 *            be modified afterwards.
+	 * @param size The number of keys.
+	 * @throws NullPointerException if a key or value is {@code null}.
+	 * @throws IllegalArgumentException if a key is duplicated.
+	 */
+	ImmutableDictionary(Object[] entries, int size) {
+		this(entries, size, false);
+	}
+
+	/**
+	 * Create a dictionary holding the specified alternating keys and values.
+	 *
+	 * @param entries The keys and values. The array is not copied and must not
+	 *            be modified afterwards.
+	 * @param size The number of keys.
+	 * @param ignoreCase If {@code true}, the keys must be strings and are
+	 *            compared ignoring case.
+	 * @throws NullPointerException if a key or value is {@code null}.
+	 * @throws IllegalArgumentException if a key is duplicated.
+	 * @throws ClassCastException if ignoreCase is {@code true} and a key is not
+	 *             a string.
+	 */
+	ImmutableDictionary(Object[] entries, int size, boolean ignoreCase) {
+		this.entries = entries;
+		this.size = size;
+		for (int i = 0, len = 2 * size; i < len; i += 2) {
+			requireNonNull(entries[i], "a Dictionary cannot contain a null key");
+			requireNonNull(entries[i + 1], "a Dictionary cannot contain a null value");
+		}
+		if (ignoreCase) {
+			hashes = new int[size];
+			for (int i = 0; i < size; i++) {
+				hashes[i] = hashIgnoreCase((String) entries[2 * i]);
+			}
+		} else {
+			hashes = null;
+		}
+		if (size > LINEAR_MAX) {
+			int[] table = new int[tableSize(size)];
+			int mask = table.length - 1;
+			for (int i = 0; i < size; i++) {
+				Object key = entries[2 * i];
+				int hash = hashAt(i);
+				int slot = spread(hash) & mask;
+				for (int j; (j = table[slot]) != 0; slot = (slot + 1) & mask) {
+					if (matches(key, hash, j - 1)) {
+						throw new IllegalArgumentException("duplicate keys");
+					}
+				}
+				table[slot] = i + 1;
+			}
+			hashTable = table;
+		} else {
+			for (int i = 0; i < size; i++) {
+				Object key = entries[2 * i];
+				int hash = hashAt(i);
+				for (int j = 0; j < i; j++) {
+					if (matches(key, hash, j)) {
+						throw new IllegalArgumentException("duplicate keys");
+					}
+				}
+			}
+			hashTable = null;
+		}
+	}
+
+	/**
+	 * A power of two with a load factor of at most one half.
+	 */
+	private static int tableSize(int size) {
+		return Integer.highestOneBit(size * 2 - 1) << 1;
+	}
+
+	private static int spread(int h) {
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * A hash which is equal for strings which are equal ignoring case.
+	 */
+	static int hashIgnoreCase(String key) {
+		int h = 0;
+		for (int i = 0, len = key.length(); i < len; i++) {
+			// as String.equalsIgnoreCase compares characters
+			h = 31 * h + Character.toLowerCase(Character.toUpperCase(key.charAt(i)));
+		}
+		return h;
+	}
+
+	boolean isCaseInsensitive() {
+		return hashes != null;
+	}
+
+	private int hashAt(int index) {
+		return (hashes != null) ? hashes[index] : entries[2 * index].hashCode();
+	}
+
+	/**
+	 * @return {@code true} if the key, with the specified hash, is the key at
+	 *         the specified index.
+	 */
+	private boolean matches(Object key, int hash, int index) {
+		if (hashes != null) {
+			return (hashes[index] == hash) && ((String) key).equalsIgnoreCase((String) entries[2 * index]);
+		}
+		return key.equals(entries[2 * index]);
+	}
+
+	/**
+	 * @return The index of the key, or -1 if not present.
+	 */
+	private int indexOf(Object key) {
+		if (key == null) {
+			return -1;
+		}
+		int hash;
+		if (hashes != null) {
+			if (!(key instanceof String)) {
+				return -1;
+			}
+			hash = hashIgnoreCase((String) key);
+		} else if (hashTable != null) {
+			hash = key.hashCode();
+		} else {
+			// not needed to search linearly
+			hash = 0;
+		}
+		int[] table = hashTable;
+		if (table == null) {
+			for (int i = 0; i < size; i++) {
+				if (matches(key, hash, i)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+		int mask = table.length - 1;
+		for (int slot = spread(hash) & mask, j; (j = table[slot]) != 0; slot = (slot + 1) & mask) {
+			if (matches(key, hash, j - 1)) {
+				return j - 1;
+			}
+		}
+		return -1;
+	}
+
+	@SuppressWarnings("unchecked")
+	K keyAt(int index) {
+		return (K) entries[2 * index];
+	}
+
+	@SuppressWarnings("unchecked")
+	V valueAt(int index) {
+		return (V) entries[2 * index + 1];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public V get(Object key) {
+		int index = indexOf(key);
+		return (index < 0) ? null : valueAt(index);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		if (value == null) {
+			return false;
+		}
+		for (int i = 0; i < size; i++) {
+			if (value.equals(entries[2 * i + 1])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public V put(K key, V value) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public V remove(Object key) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void putAll(Map<? extends K, ? extends V> m) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void clear() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Enumeration<K> keys() {
+		return new Cursor<K>(0);
+	}
+
+	@Override
+	public Enumeration<V> elements() {
+		return new Cursor<V>(1);
+	}
+
+	@Override
+	public Set<K> keySet() {
+		return new AbstractSet<K>() {
+			@Override
+			public Iterator<K> iterator() {
+				return new Cursor<K>(0);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+		};
+	}
+
+	@Override
+	public Collection<V> values() {
+		return new AbstractCollection<V>() {
+			@Override
+			public Iterator<V> iterator() {
+				return new Cursor<V>(1);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return containsValue(o);
+			}
+		};
+	}
+
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		return new AbstractSet<Entry<K, V>>() {
+			@Override
+			public Iterator<Entry<K, V>> iterator() {
+				return new Cursor<Entry<K, V>>(-1);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				if (o instanceof Entry) {
+					Entry<?, ?> e = (Entry<?, ?>) o;
+					int index = indexOf(e.getKey());
+					return (index >= 0) && valueAt(index).equals(e.getValue());
+				}
+				return false;
+			}
+		};
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (!(obj instanceof Map)) {
+			return false;
+		}
+		Map<?, ?> other = (Map<?, ?>) obj;
+		if (other.size() != size) {
+			return false;
+		}
+		try {
+			for (int i = 0; i < size; i++) {
+				if (!valueAt(i).equals(other.get(keyAt(i)))) {
+					return false;
+				}
+			}
+		} catch (ClassCastException | NullPointerException e) {
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int h = 0;
+		for (int i = 0; i < size; i++) {
+			h += keyAt(i).hashCode() ^ valueAt(i).hashCode();
+		}
+		return h;
+	}
+
+	@Override
+	public String toString() {
+		if (size == 0) {
+			return "{}";
+		}
+		StringBuilder sb = new StringBuilder().append('{');
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(keyAt(i))
+				.append('=')
+				.append(valueAt(i));
+		}
+		return sb.append('}')
+			.toString();
+	}
+
+	/**
+	 * Iterates the keys (0), the values (1) or the entries (-1).
+	 */
+	private final class Cursor<E> implements Iterator<E>, Enumeration<E> {
+		private final int	offset;
+		private int			index;
+
+		Cursor(int offset) {
+			this.offset = offset;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return index < size;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public E next() {
+			if (index >= size) {
+				throw new NoSuchElementException();
+			}
+			int i = index++;
+			if (offset < 0) {
+				return (E) new SimpleImmutableEntry<>(keyAt(i), valueAt(i));
+			}
+			return (E) entries[2 * i + offset];
+		}
+
+		@Override
+		public boolean hasMoreElements() {
+			return hasNext();
+		}
+
+		@Override
+		public E nextElement() {
+			return next();
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) OSGi Alliance (2019). All Rights Reserved.
+ * Copyright (c) OSGi Alliance (2019, 2020). All Rights Reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,8 +16,14 @@
 
 package org.osgi.test.common.filter;
 
+import static java.util.Objects.requireNonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
+import org.osgi.framework.Constants;
 import org.osgi.framework.Filter;
 import org.osgi.framework.FrameworkUtil;
 import org.osgi.test.common.exceptions.FunctionWithException;
@@ -26,9 +32,26 @@ public class Filters {
 
 	private Filters() {}
 
-	private static final Function<String, Filter> createFilter = FunctionWithException
+	private static final Function<String, Filter>	createFilter	= FunctionWithException
 		.asFunction(FrameworkUtil::createFilter);
 
+	/**
+	 * The maximum number of parsed filters retained by the cache.
+	 */
+	public static final int							CACHE_SIZE		= 512;
+
+	private static final Map<String, Filter>		cache			= new LinkedHashMap<String, Filter>(64, 0.75f,
+		true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Filter> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+	private static final AtomicLong					hits			= new AtomicLong();
+	private static final AtomicLong					misses			= new AtomicLong();
+
 	/**
 	 * Utility method for creating a {@link Filter} using a format string.
 	 * <p>
@@ -40,7 +63,81 @@ public class Filters {
 	 */
 	public static Filter format(String format, Object... args) {
 		String filter = String.format(format, args);
-		return createFilter.apply(filter);
+		return filter(filter);
+	}
+
+	/**
+	 * Return the {@link Filter} for the specified filter string.
+	 * <p>
+	 * Parsed filters are cached, keyed by the filter string, so that the same
+	 * filter is parsed at most once while it remains in the cache. The least
+	 * recently used filters are evicted once {@link #CACHE_SIZE} filters are
+	 * cached.
+	 *
+	 * @param filter a filter string
+	 * @return filter
+	 */
+	public static Filter filter(String filter) {
+		requireNonNull(filter);
+		Filter result;
+		synchronized (cache) {
+			result = cache.get(filter);
+		}
+		if (result != null) {
+			hits.incrementAndGet();
+			return result;
+		}
+		misses.incrementAndGet();
+		// Parse outside the lock; a concurrent miss on the same string at worst
+		// parses it twice.
+		result = createFilter.apply(filter);
+		synchronized (cache) {
+			cache.put(filter, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Return a {@link Filter} matching services registered under the
+	 * specified type and, if not empty, matching the specified filter string.
+	 * <p>
+	 * The composite filter string is assembled directly and parsed once.
+	 *
+	 * @param type the service type
+	 * @param filter a filter string, may be empty
+	 * @return filter
+	 */
+	public static Filter objectClass(Class<?> type, String filter) {
+		String objectClass = "(" + Constants.OBJECTCLASS + "=" + type.getName() + ")";
+		if (requireNonNull(filter).isEmpty()) {
+			return filter(objectClass);
+		}
+		return filter("(&" + objectClass + filter + ")");
+	}
+
+	/**
+	 * @return the number of filter requests answered from the cache.
+	 */
+	public static long getCacheHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of filter requests which required parsing.
+	 */
+	public static long getCacheMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Discard all cached filters and reset the hit and miss counters.
+	 */
+	public static void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+		}
+		hits.set(0L);
+		misses.set(0L);
 	}
 
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.inject;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * A field together with the injection annotation found on it, either directly
+ * or as a meta-annotation.
+ *
+ * @param <A> The annotation type.
+ */
+public final class AnnotatedField<A extends Annotation> {
+	private final Field	field;
+	private final A		annotation;
+
+	AnnotatedField(Field field, A annotation) {
+		this.field = field;
+		this.annotation = annotation;
+	}
+
+	/**
+	 * @return The field.
+	 */
+	public Field getField() {
+		return field;
+	}
+
+	/**
+	 * @return The annotation resolved for the field.
+	 */
+	public A getAnnotation() {
+		return annotation;
+	}
+
+	/**
+	 * @return {@code true} if the field is static.
+	 */
+	public boolean isStatic() {
+		return Modifier.isStatic(field.getModifiers());
+	}
+
+	@Override
+	public String toString() {
+		return field + " " + annotation;
+	}
+}
@@ -24,6 +24,9 @@ import static org.osgi.test.common.exceptions.Exceptions.unchecked;
 
 import java.lang.annotation.Annotation;
 import java.lang.annotation.Inherited;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
@@ -33,10 +36,14 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 
+import org.osgi.test.common.exceptions.Exceptions;
+
 public class FieldInjector {
 
 	private static final String									annotationTypeMustNotBeNull	= "annotationType must not be null";
@@ -54,31 +61,175 @@ public class FieldInjector {
 	private static final Predicate<Class<?>>					isSearchable				= c -> (c != null
 		&& c != Object.class);
 	private static final String									predicateMustNotBeNull		= "predicate must not be null";
+	private static final MethodType								setterType					= MethodType
+		.methodType(void.class, Object.class, Object.class);
+	// Field.set is caller sensitive and cannot be looked up directly
+	private static final MethodHandle							fieldSet					= unchecked(
+		() -> MethodHandles.lookup()
+			.findStatic(FieldInjector.class, "reflectiveSet", setterType.insertParameterTypes(0, Field.class)));
+	private static final ClassValue<Map<String, MethodHandle>>	setters						= new ClassValue<Map<String, MethodHandle>>() {
+		@Override
+		protected Map<String, MethodHandle> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+	/**
+	 * The annotated fields of a class, per annotation type. Classes do not
+	 * change, so the hierarchy walk and annotation search are done once per
+	 * class and annotation type.
+	 */
+	private static final ClassValue<Map<Class<? extends Annotation>, AnnotatedFields>>	cache	= new ClassValue<Map<Class<? extends Annotation>, AnnotatedFields>>() {
+		@Override
+		protected Map<Class<? extends Annotation>, AnnotatedFields> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
 
 	public static List<Field> findAnnotatedNonStaticFields(Class<?> clazz, Class<? extends Annotation> annotationType) {
-		return findAnnotatedFields(clazz, annotationType, m -> !Modifier.isStatic(m.getModifiers()));
+		return annotatedFields(clazz, annotationType).nonStaticFields;
+	}
+
+	public static List<Field> findAnnotatedStaticFields(Class<?> clazz, Class<? extends Annotation> annotationType) {
+		return annotatedFields(clazz, annotationType).staticFields;
 	}
 
 	public static List<Field> findAnnotatedFields(Class<?> clazz, Class<? extends Annotation> annotationType,
 		Predicate<Field> predicate) {
 
-		requireNonNull(annotationType, annotationTypeMustNotBeNull);
 		requireNonNull(predicate, predicateMustNotBeNull);
 
-		Predicate<Field> annotated = field -> findAnnotation(field, annotationType).isPresent();
-
-		return findAllFieldsInHierarchy(requireNonNull(clazz, classMustNotBeNull)).stream()
-			.filter(annotated.and(predicate))
+		return annotatedFields(clazz, annotationType).all.stream()
+			.map(AnnotatedField::getField)
+			.filter(predicate)
 			.collect(collectingAndThen(toList(), Collections::unmodifiableList));
 	}
 
-	public static void setField(Field field, Object instance, Object value) {
-		unchecked(() -> {
-			if (!field.isAccessible()) {
-				field.setAccessible(true);
+	/**
+	 * Find the non-static fields of the class hierarchy annotated, directly or
+	 * via a meta-annotation, with the specified annotation type.
+	 *
+	 * @param clazz The class to search.
+	 * @param annotationType The annotation type.
+	 * @return An unmodifiable list of the fields with their resolved
+	 *         annotation.
+	 */
+	public static <A extends Annotation> List<AnnotatedField<A>> findAnnotatedNonStaticFieldsWithAnnotation(
+		Class<?> clazz, Class<A> annotationType) {
+		return annotatedFields(clazz, annotationType).nonStatic();
+	}
+
+	/**
+	 * Find the static fields of the class hierarchy annotated, directly or via
+	 * a meta-annotation, with the specified annotation type.
+	 *
+	 * @param clazz The class to search.
+	 * @param annotationType The annotation type.
+	 * @return An unmodifiable list of the fields with their resolved
+	 *         annotation.
+	 */
+	public static <A extends Annotation> List<AnnotatedField<A>> findAnnotatedStaticFieldsWithAnnotation(
+		Class<?> clazz, Class<A> annotationType) {
+		return annotatedFields(clazz, annotationType).statics();
+	}
+
+	static AnnotatedFields annotatedFields(Class<?> clazz, Class<? extends Annotation> annotationType) {
+		requireNonNull(clazz, classMustNotBeNull);
+		requireNonNull(annotationType, annotationTypeMustNotBeNull);
+		return cache.get(clazz)
+			.computeIfAbsent(annotationType, a -> new AnnotatedFields(clazz, a));
+	}
+
+	static final class AnnotatedFields {
+		final List<AnnotatedField<?>>	all;
+		final List<AnnotatedField<?>>	nonStaticAnnotated;
+		final List<AnnotatedField<?>>	staticAnnotated;
+		final List<Field>				nonStaticFields;
+		final List<Field>				staticFields;
+
+		<A extends Annotation> AnnotatedFields(Class<?> clazz, Class<A> annotationType) {
+			List<AnnotatedField<?>> all = new ArrayList<>();
+			for (Field field : findAllFieldsInHierarchy(clazz)) {
+				findAnnotation(field, annotationType).ifPresent(a -> all.add(new AnnotatedField<>(field, a)));
 			}
-			field.set(instance, value);
-		});
+			this.all = Collections.unmodifiableList(all);
+			this.nonStaticAnnotated = all.stream()
+				.filter(f -> !f.isStatic())
+				.collect(collectingAndThen(toList(), Collections::unmodifiableList));
+			this.staticAnnotated = all.stream()
+				.filter(AnnotatedField::isStatic)
+				.collect(collectingAndThen(toList(), Collections::unmodifiableList));
+			this.nonStaticFields = nonStaticAnnotated.stream()
+				.map(AnnotatedField::getField)
+				.collect(collectingAndThen(toList(), Collections::unmodifiableList));
+			this.staticFields = staticAnnotated.stream()
+				.map(AnnotatedField::getField)
+				.collect(collectingAndThen(toList(), Collections::unmodifiableList));
+		}
+
+		// The lists only ever hold fields annotated with the annotation type
+		// they are cached under.
+		@SuppressWarnings({
+			"unchecked", "rawtypes"
+		})
+		<A extends Annotation> List<AnnotatedField<A>> nonStatic() {
+			return (List) nonStaticAnnotated;
+		}
+
+		@SuppressWarnings({
+			"unchecked", "rawtypes"
+		})
+		<A extends Annotation> List<AnnotatedField<A>> statics() {
+			return (List) staticAnnotated;
+		}
+	}
+
+	/**
+	 * Set the value of a field.
+	 * <p>
+	 * The field is made accessible and unreflected into a {@link MethodHandle}
+	 * setter on first use; the setter is cached per declaring class and field
+	 * name so repeated injections skip the reflective access checks.
+	 *
+	 * @param field The field to set.
+	 * @param instance The instance whose field is set, ignored for a static
+	 *            field.
+	 * @param value The value to set.
+	 */
+	public static void setField(Field field, Object instance, Object value) {
+		MethodHandle setter = setters.get(field.getDeclaringClass())
+			.computeIfAbsent(field.getName(), name -> setter(field));
+		try {
+			setter.invokeExact(instance, value);
+		} catch (Throwable t) {
+			throw Exceptions.duck(t);
+		}
+	}
+
+	/**
+	 * @return A setter of type {@code (Object,Object)void} taking the instance,
+	 *         which is ignored for static fields, and the value.
+	 */
+	static MethodHandle setter(Field field) {
+		if (!field.isAccessible()) {
+			field.setAccessible(true);
+		}
+		MethodHandle setter;
+		try {
+			setter = MethodHandles.lookup()
+				.unreflectSetter(field);
+		} catch (IllegalAccessException e) {
+			// e.g. a static final field; let Field.set report it
+			return fieldSet.bindTo(field);
+		}
+		if (Modifier.isStatic(field.getModifiers())) {
+			setter = MethodHandles.dropArguments(setter, 0, Object.class);
+		}
+		return setter.asType(setterType);
+	}
+
+	private static void reflectiveSet(Field field, Object instance, Object value) throws IllegalAccessException {
+		field.set(instance, value);
 	}
 
 	static List<Field> findAllFieldsInHierarchy(Class<?> clazz) {
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.install;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+import static org.osgi.test.common.exceptions.Exceptions.duck;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.osgi.framework.Constants;
+
+/**
+ * Builds a bundle jar in memory.
+ * <p>
+ * This is useful for tests which need small synthetic bundles, for example a
+ * bundle which only exports a package, without having to build and embed
+ * them.
+ *
+ * <pre>
+ * Bundle bundle = installBundle.installBundle(new BundleBuilder("test.exporter")
+ * 	.exportPackage("com.acme.api")
+ * 	.addClass(Foo.class), true);
+ * </pre>
+ * <p>
+ * Bundles built this way are installed with
+ * {@link org.osgi.framework.BundleContext#installBundle(String, InputStream)}
+ * and so are uninstalled by {@code CloseableBundleContext} like any other
+ * bundle installed during a test.
+ */
+public class BundleBuilder {
+
+	/**
+	 * The location prefix of bundles built by a bundle builder whose location
+	 * was not set.
+	 */
+	public static final String			LOCATION_PREFIX	= "osgi.test.builder:";
+
+	private final Map<String, String>	headers			= new LinkedHashMap<>();
+	private final Map<String, byte[]>	entries			= new LinkedHashMap<>();
+	private String						location;
+
+	/**
+	 * Create a builder for a bundle with the specified symbolic name and
+	 * version {@code 0.0.0}.
+	 *
+	 * @param symbolicName The bundle symbolic name.
+	 */
+	public BundleBuilder(String symbolicName) {
+		header(Constants.BUNDLE_MANIFESTVERSION, "2");
+		header(Constants.BUNDLE_SYMBOLICNAME, requireNonNull(symbolicName));
+		header(Constants.BUNDLE_VERSION, "0.0.0");
+	}
+
+	/**
+	 * Set a manifest header, replacing any previous value.
+	 *
+	 * @param name The header name.
+	 * @param value The header value.
+	 * @return this builder
+	 */
+	public BundleBuilder header(String name, String value) {
+		headers.put(requireNonNull(name), requireNonNull(value));
+		return this;
+	}
+
+	/**
+	 * Set the {@code Bundle-Version} header.
+	 *
+	 * @param version The bundle version.
+	 * @return this builder
+	 */
+	public BundleBuilder version(String version) {
+		return header(Constants.BUNDLE_VERSION, version);
+	}
+
+	/**
+	 * Add clauses to the {@code Export-Package} header.
+	 *
+	 * @param clauses The export clauses, for example
+	 *            {@code "com.acme.api;version=1.0"}.
+	 * @return this builder
+	 */
+	public BundleBuilder exportPackage(String... clauses) {
+		return appendHeader(Constants.EXPORT_PACKAGE, clauses);
+	}
+
+	/**
+	 * Add clauses to the {@code Import-Package} header.
+	 *
+	 * @param clauses The import clauses.
+	 * @return this builder
+	 */
+	public BundleBuilder importPackage(String... clauses) {
+		return appendHeader(Constants.IMPORT_PACKAGE, clauses);
+	}
+
+	/**
+	 * Add clauses to the {@code Require-Capability} header.
+	 *
+	 * @param clauses The requirement clauses.
+	 * @return this builder
+	 */
+	public BundleBuilder requireCapability(String... clauses) {
+		return appendHeader(Constants.REQUIRE_CAPABILITY, clauses);
+	}
+
+	/**
+	 * Add clauses to the {@code Provide-Capability} header.
+	 *
+	 * @param clauses The capability clauses.
+	 * @return this builder
+	 */
+	public BundleBuilder provideCapability(String... clauses) {
+		return appendHeader(Constants.PROVIDE_CAPABILITY, clauses);
+	}
+
+	private BundleBuilder appendHeader(String name, String... clauses) {
+		StringBuilder sb = new StringBuilder();
+		String value = headers.get(name);
+		if (value != null) {
+			sb.append(value);
+		}
+		for (String clause : clauses) {
+			if (sb.length() > 0) {
+				sb.append(',');
+			}
+			sb.append(requireNonNull(clause));
+		}
+		return header(name, sb.toString());
+	}
+
+	/**
+	 * Add an entry to the bundle, replacing any previous entry with the same
+	 * path.
+	 *
+	 * @param path The entry path, for example
+	 *            {@code "OSGI-INF/component.xml"}.
+	 * @param content The entry content.
+	 * @return this builder
+	 */
+	public BundleBuilder entry(String path, byte[] content) {
+		entries.put(requireNonNull(path), requireNonNull(content));
+		return this;
+	}
+
+	/**
+	 * Add an entry to the bundle with the UTF-8 encoding of the specified
+	 * text.
+	 *
+	 * @param path The entry path.
+	 * @param content The entry content.
+	 * @return this builder
+	 */
+	public BundleBuilder entry(String path, String content) {
+		return entry(path, content.getBytes(UTF_8));
+	}
+
+	/**
+	 * Add the class file of the specified class to the bundle.
+	 * <p>
+	 * Only the class file itself is added, not the class files of its nested
+	 * classes.
+	 *
+	 * @param type The class whose class file is added.
+	 * @return this builder
+	 * @throws AssertionError if the class file cannot be found
+	 */
+	public BundleBuilder addClass(Class<?> type) {
+		String path = type.getName()
+			.replace('.', '/') + ".class";
+		ClassLoader loader = type.getClassLoader();
+		InputStream is = (loader != null) ? loader.getResourceAsStream(path)
+			: ClassLoader.getSystemResourceAsStream(path);
+		if (is == null) {
+			throw new AssertionError("No class file " + path + " found for " + type);
+		}
+		try {
+			return entry(path, InstallBundle.read(() -> is));
+		} catch (Exception e) {
+			throw duck(e);
+		}
+	}
+
+	/**
+	 * Set the location with which the bundle is installed.
+	 *
+	 * @param location The bundle location.
+	 * @return this builder
+	 */
+	public BundleBuilder location(String location) {
+		this.location = requireNonNull(location);
+		return this;
+	}
+
+	/**
+	 * @return The location with which the bundle is installed. Unless set, the
+	 *         location is {@link #LOCATION_PREFIX} followed by the symbolic
+	 *         name and version of the bundle.
+	 */
+	public String getLocation() {
+		if (location != null) {
+			return location;
+		}
+		return LOCATION_PREFIX + headers.get(Constants.BUNDLE_SYMBOLICNAME) + "/"
+			+ headers.get(Constants.BUNDLE_VERSION);
+	}
+
+	/**
+	 * Write the bundle jar.
+	 *
+	 * @return The content of the bundle jar.
+	 */
+	public byte[] build() {
+		Manifest manifest = new Manifest();
+		Attributes main = manifest.getMainAttributes();
+		main.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		headers.forEach(main::putValue);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (JarOutputStream jar = new JarOutputStream(out, manifest)) {
+			Set<String> directories = new LinkedHashSet<>();
+			for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+				String path = entry.getKey();
+				for (int i = path.indexOf('/'); i > 0; i = path.indexOf('/', i + 1)) {
+					String directory = path.substring(0, i + 1);
+					if (directories.add(directory)) {
+						jar.putNextEntry(new JarEntry(directory));
+						jar.closeEntry();
+					}
+				}
+				jar.putNextEntry(new JarEntry(path));
+				jar.write(entry.getValue());
+				jar.closeEntry();
+			}
+		} catch (IOException e) {
+			throw duck(e);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Write the bundle jar.
+	 *
+	 * @return A stream of the content of the bundle jar.
+	 */
+	public InputStream openStream() {
+		return new ByteArrayInputStream(build());
+	}
+
+	@Override
+	public String toString() {
+		return getLocation();
+	}
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) OSGi Alliance (2019). All Rights Reserved.
+ * Copyright (c) OSGi Alliance (2019, 2020). All Rights Reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,19 +18,78 @@ package org.osgi.test.common.install;
 
 import static org.osgi.test.common.exceptions.Exceptions.duck;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+import org.osgi.framework.wiring.FrameworkWiring;
+import org.osgi.test.common.context.CloseableBundleContext;
+import org.osgi.test.common.exceptions.SupplierWithException;
 
 public class InstallBundle {
 
-	private final BundleContext bundleContext;
+	/**
+	 * The framework or system property which, when {@code true}, makes
+	 * instances created with {@link #InstallBundle(BundleContext)} cache
+	 * installed bundles.
+	 */
+	public static final String	CACHE_BUNDLES			= "org.osgi.test.common.install.cache";
+
+	/**
+	 * The location prefix of bundles installed by the bundle cache. The rest of
+	 * the location is the SHA-256 digest of the bundle content.
+	 */
+	public static final String	CACHE_LOCATION_PREFIX	= "osgi.test.cache:sha256:";
+
+	private static final String	REFERENCE_PROTOCOL		= "reference:";
+
+	private final BundleContext	bundleContext;
+	private final boolean		cacheBundles;
 
 	public InstallBundle(BundleContext bundleContext) {
+		this(bundleContext, Boolean.parseBoolean(bundleContext.getProperty(CACHE_BUNDLES)));
+	}
+
+	/**
+	 * Create an InstallBundle which optionally caches installed bundles.
+	 * <p>
+	 * A cached bundle is installed with a location derived from the SHA-256
+	 * digest of its content, directly with the context of the bundle of the
+	 * specified bundle context, so that it is not uninstalled at the end of
+	 * the test. When the specified bundle context was returned by
+	 * {@link CloseableBundleContext#proxy(Class, BundleContext)}, the cached
+	 * bundle is stopped when that context is closed. When a bundle with
+	 * identical content is installed again, the cached bundle is stopped, to
+	 * reset it, rather than being installed and resolved afresh.
+	 * <p>
+	 * Cached bundles are not evicted automatically. They remain installed
+	 * until {@link #evictCachedBundles(BundleContext)} is called or the
+	 * framework is stopped.
+	 *
+	 * @param bundleContext The bundle context.
+	 * @param cacheBundles If {@code true}, cache installed bundles.
+	 */
+	public InstallBundle(BundleContext bundleContext, boolean cacheBundles) {
 		this.bundleContext = bundleContext;
+		this.cacheBundles = cacheBundles;
 	}
 
 	/**
@@ -57,11 +116,13 @@ public class InstallBundle {
 	 * <p>
 	 * Uses {@link Bundle#findEntries(String, String, boolean)} by splitting the
 	 * {@code pathToEmbeddedJar} argument on the last backslash ({@code /}). The
-	 * {@code recurse} argument is set to false.
+	 * {@code recurse} argument is set to false. The bundle is installed with
+	 * the path of the entry as its location, for example {@code "/tb1.jar"},
+	 * unless this instance caches bundles.
 	 * <p>
 	 * When implemented against {@code CloseableBundleContext} bundles installed
 	 * in this fashion are uninstalled automatically at the end of the test
-	 * method.
+	 * method, unless this instance caches bundles.
 	 *
 	 * @param pathToEmbeddedJar The entry path to the jar resource.
 	 * @param startBundle if true, start the bundle
@@ -69,6 +130,181 @@ public class InstallBundle {
 	 * @throws AssertionError if no bundle is found
 	 */
 	public Bundle installBundle(String pathToEmbeddedJar, boolean startBundle) {
+		Bundle bundle = installEntry(findEntries(pathToEmbeddedJar).nextElement());
+		if (startBundle) {
+			try {
+				bundle.start();
+			} catch (Exception e) {
+				throw duck(e);
+			}
+		}
+		return bundle;
+	}
+
+	/**
+	 * Install and start bundles embedded within the current bundle.
+	 *
+	 * @param pathsToEmbeddedJars The entry paths to the jar resources.
+	 * @return installed and started bundles
+	 * @throws AssertionError if no bundle is found for a path
+	 * @see #installBundles(boolean, String...)
+	 */
+	public List<Bundle> installBundles(String... pathsToEmbeddedJars) {
+		return installBundles(true, pathsToEmbeddedJars);
+	}
+
+	/**
+	 * Install bundles embedded within the current bundle, resolve them
+	 * together and optionally start them.
+	 * <p>
+	 * The last segment of each path may be a file pattern, as accepted by
+	 * {@link Bundle#findEntries(String, String, boolean)}, for example
+	 * {@code "bundles/*.jar"}, in which case every matching entry is
+	 * installed. Every bundle is installed with the path of its entry as its
+	 * location, as with {@link #installBundle(String, boolean)}.
+	 * <p>
+	 * All the bundles are installed before any is resolved, and they are then
+	 * resolved with a single {@link FrameworkWiring#resolveBundles(Collection)}
+	 * call rather than one resolve per bundle start. Bundles are started so
+	 * that bundles in the batch providing capabilities to other bundles in the
+	 * batch are started first. Fragments are not started. If bundles are to
+	 * be started and some of them fail to resolve, none is started.
+	 *
+	 * @param startBundles if true, start the bundles
+	 * @param pathsToEmbeddedJars The entry paths to the jar resources.
+	 * @return installed bundles, in the order of the paths
+	 * @throws AssertionError if no bundle is found for a path or if bundles to
+	 *             be started failed to resolve
+	 */
+	public List<Bundle> installBundles(boolean startBundles, String... pathsToEmbeddedJars) {
+		List<Bundle> bundles = new ArrayList<>();
+		for (String pathToEmbeddedJar : pathsToEmbeddedJars) {
+			for (Enumeration<URL> entries = findEntries(pathToEmbeddedJar); entries.hasMoreElements();) {
+				bundles.add(installEntry(entries.nextElement()));
+			}
+		}
+		if (!resolveBundles(bundles) && startBundles) {
+			List<String> unresolved = new ArrayList<>();
+			for (Bundle bundle : bundles) {
+				if ((bundle.getState() & Bundle.INSTALLED) != 0) {
+					unresolved.add(bundle.getSymbolicName() + " (" + bundle.getLocation() + ")");
+				}
+			}
+			throw new AssertionError("Bundles failed to resolve: " + unresolved);
+		}
+		if (startBundles) {
+			for (Bundle bundle : startOrder(bundles)) {
+				if (isFragment(bundle)) {
+					continue;
+				}
+				try {
+					bundle.start();
+				} catch (Exception e) {
+					throw duck(e);
+				}
+			}
+		}
+		return bundles;
+	}
+
+	/**
+	 * Install a bundle from the file system.
+	 * <p>
+	 * The bundle is installed with a {@code reference:} location so that the
+	 * framework uses it in place rather than copying it into its storage
+	 * area. A directory is installed as an exploded bundle. If the framework
+	 * does not support {@code reference:} locations, a jar file is installed
+	 * from its content instead.
+	 * <p>
+	 * If this instance caches bundles, a jar file is installed from its
+	 * content through the cache, as for
+	 * {@link #installBundle(String, SupplierWithException, boolean)}, rather
+	 * than with a {@code reference:} location. A directory is never cached.
+	 * <p>
+	 * When implemented against {@code CloseableBundleContext} bundles installed
+	 * in this fashion are uninstalled automatically at the end of the test
+	 * method, unless they are cached.
+	 *
+	 * @param path The path to a bundle jar or an exploded bundle directory.
+	 * @param startBundle if true, start the bundle
+	 * @return installed bundle
+	 * @throws AssertionError if the path does not exist
+	 */
+	public Bundle installBundle(Path path, boolean startBundle) {
+		if (!Files.exists(path)) {
+			throw new AssertionError("No bundle found at " + path);
+		}
+		if (cacheBundles && !Files.isDirectory(path)) {
+			return installBundle(path.toUri()
+				.toString(), () -> Files.newInputStream(path), startBundle);
+		}
+		String location = REFERENCE_PROTOCOL + path.toUri();
+		Bundle bundle;
+		try {
+			bundle = bundleContext.installBundle(location);
+		} catch (BundleException e) {
+			if (Files.isDirectory(path)) {
+				throw duck(e);
+			}
+			bundle = installBundle(path.toUri()
+				.toString(), () -> Files.newInputStream(path), false);
+		}
+		if (startBundle) {
+			try {
+				bundle.start();
+			} catch (Exception e) {
+				throw duck(e);
+			}
+		}
+		return bundle;
+	}
+
+	/**
+	 * Install a bundle from the content supplied by an input stream.
+	 * <p>
+	 * The stream is opened once and closed after the bundle is installed. If
+	 * this instance caches bundles, the content is cached as for
+	 * {@link #installBundle(String, boolean)} and the location is ignored.
+	 * <p>
+	 * When implemented against {@code CloseableBundleContext} bundles installed
+	 * in this fashion are uninstalled automatically at the end of the test
+	 * method, unless this instance caches bundles.
+	 *
+	 * @param location The location of the bundle.
+	 * @param content Supplies the stream of the bundle content.
+	 * @param startBundle if true, start the bundle
+	 * @return installed bundle
+	 */
+	public Bundle installBundle(String location, SupplierWithException<? extends InputStream> content,
+		boolean startBundle) {
+		Bundle bundle = install(location, content);
+		if (startBundle) {
+			try {
+				bundle.start();
+			} catch (Exception e) {
+				throw duck(e);
+			}
+		}
+		return bundle;
+	}
+
+	/**
+	 * Install a bundle built in memory.
+	 * <p>
+	 * The bundle is installed with the location of the builder. When
+	 * implemented against {@code CloseableBundleContext} bundles installed in
+	 * this fashion are uninstalled automatically at the end of the test
+	 * method, unless this instance caches bundles.
+	 *
+	 * @param builder The builder of the bundle.
+	 * @param startBundle if true, start the bundle
+	 * @return installed bundle
+	 */
+	public Bundle installBundle(BundleBuilder builder, boolean startBundle) {
+		return installBundle(builder.getLocation(), builder::openStream, startBundle);
+	}
+
+	private Enumeration<URL> findEntries(String pathToEmbeddedJar) {
 		int lastIndexOf = pathToEmbeddedJar.lastIndexOf('/');
 		String[] parts = (lastIndexOf == -1) ? new String[] {
 			"/", pathToEmbeddedJar
@@ -79,18 +315,154 @@ public class InstallBundle {
 			.findEntries(parts[0], parts[1], false);
 		if (entries == null || !entries.hasMoreElements())
 			throw new AssertionError("No bundle entry " + pathToEmbeddedJar + " found in " + bundleContext.getBundle());
-		try (InputStream is = entries.nextElement()
-			.openStream()) {
-			Bundle bundle = bundleContext.installBundle(pathToEmbeddedJar, is);
-			if (startBundle) {
-				bundle.start();
+		return entries;
+	}
+
+	private Bundle installEntry(URL entry) {
+		return install(entry.getPath(), entry::openStream);
+	}
+
+	private Bundle install(String location, SupplierWithException<? extends InputStream> content) {
+		if (cacheBundles) {
+			return installCachedBundle(content);
+		}
+		try (InputStream is = content.get()) {
+			return bundleContext.installBundle(location, is);
+		} catch (Exception e) {
+			throw duck(e);
+		}
+	}
+
+	private Bundle installCachedBundle(SupplierWithException<? extends InputStream> supplier) {
+		try {
+			byte[] content = read(supplier);
+			String location = CACHE_LOCATION_PREFIX + sha256(content);
+			BundleContext frameworkContext = bundleContext.getBundle()
+				.getBundleContext();
+			Bundle bundle = frameworkContext.getBundle(location);
+			if (bundle == null || bundle.getState() == Bundle.UNINSTALLED) {
+				// A concurrent install of the same location returns the
+				// bundle installed first.
+				bundle = frameworkContext.installBundle(location, new ByteArrayInputStream(content));
+			} else if ((bundle.getState() & (Bundle.STARTING | Bundle.ACTIVE)) != 0) {
+				bundle.stop();
 			}
+			CloseableBundleContext.stopOnClose(bundleContext, bundle);
 			return bundle;
 		} catch (Exception e) {
 			throw duck(e);
 		}
 	}
 
+	/**
+	 * Uninstall the cached bundles installed in the framework of the specified
+	 * bundle context.
+	 * <p>
+	 * The uninstalled bundles are removed from the framework when it is next
+	 * refreshed.
+	 *
+	 * @param bundleContext The bundle context.
+	 * @return The uninstalled bundles.
+	 */
+	public static List<Bundle> evictCachedBundles(BundleContext bundleContext) {
+		List<Bundle> evicted = new ArrayList<>();
+		for (Bundle bundle : bundleContext.getBundles()) {
+			if (bundle.getLocation()
+				.startsWith(CACHE_LOCATION_PREFIX) && (bundle.getState() != Bundle.UNINSTALLED)) {
+				try {
+					bundle.uninstall();
+					evicted.add(bundle);
+				} catch (IllegalStateException e) {
+					// uninstalled concurrently
+				} catch (BundleException e) {
+					throw duck(e);
+				}
+			}
+		}
+		return evicted;
+	}
+
+	/**
+	 * @return {@code false} if some of the bundles failed to resolve.
+	 */
+	private boolean resolveBundles(List<Bundle> bundles) {
+		Bundle systemBundle = bundleContext.getBundle(Constants.SYSTEM_BUNDLE_LOCATION);
+		FrameworkWiring frameworkWiring = (systemBundle != null) ? systemBundle.adapt(FrameworkWiring.class) : null;
+		if (frameworkWiring == null) {
+			// Bundles which fail to resolve are reported when started.
+			return true;
+		}
+		return frameworkWiring.resolveBundles(bundles);
+	}
+
+	private static boolean isFragment(Bundle bundle) {
+		BundleRevision revision = bundle.adapt(BundleRevision.class);
+		return (revision != null) && ((revision.getTypes() & BundleRevision.TYPE_FRAGMENT) != 0);
+	}
+
+	/**
+	 * Order the bundles so that every bundle comes after the bundles of the
+	 * list it is wired to.
+	 */
+	static List<Bundle> startOrder(List<Bundle> bundles) {
+		Set<Bundle> batch = new HashSet<>(bundles);
+		Set<Bundle> visited = new HashSet<>();
+		List<Bundle> ordered = new ArrayList<>(bundles.size());
+		for (Bundle bundle : bundles) {
+			visit(bundle, batch, visited, ordered);
+		}
+		return ordered;
+	}
+
+	private static void visit(Bundle bundle, Set<Bundle> batch, Set<Bundle> visited, List<Bundle> ordered) {
+		if (!visited.add(bundle)) {
+			return;
+		}
+		BundleWiring wiring = bundle.adapt(BundleWiring.class);
+		if (wiring != null) {
+			List<BundleWire> wires = wiring.getRequiredWires(null);
+			if (wires != null) {
+				for (BundleWire wire : wires) {
+					Bundle provider = wire.getProvider()
+						.getBundle();
+					if (batch.contains(provider)) {
+						visit(provider, batch, visited, ordered);
+					}
+				}
+			}
+		}
+		ordered.add(bundle);
+	}
+
+	static byte[] read(SupplierWithException<? extends InputStream> supplier) throws Exception {
+		try (InputStream is = supplier.get()) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			for (int n; (n = is.read(buffer)) > 0;) {
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	static String sha256(byte[] content) throws NoSuchAlgorithmException {
+		byte[] digest = MessageDigest.getInstance("SHA-256")
+			.digest(content);
+		StringBuilder sb = new StringBuilder(digest.length * 2);
+		for (byte b : digest) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16))
+				.append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return {@code true} if this instance caches installed bundles.
+	 */
+	public boolean isCachingBundles() {
+		return cacheBundles;
+	}
+
 	/**
 	 * @return The bundle context that this instance is attached to.
 	 */
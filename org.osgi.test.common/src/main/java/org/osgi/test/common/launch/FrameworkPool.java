@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.launch;
+
+import static java.util.Objects.requireNonNull;
+import static org.osgi.test.common.exceptions.Exceptions.duck;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.osgi.annotation.versioning.ProviderType;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+import org.osgi.framework.launch.Framework;
+import org.osgi.framework.launch.FrameworkFactory;
+import org.osgi.framework.startlevel.FrameworkStartLevel;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.FrameworkWiring;
+import org.osgi.test.common.context.CloseableBundleContext;
+
+/**
+ * A pool of embedded OSGi frameworks.
+ * <p>
+ * Each framework is launched with the configuration of the pool, in a storage
+ * area of its own, and the base bundles of the pool are installed and started.
+ * The set of bundles, their states and the framework start level are then
+ * recorded. Each call to {@link #acquire()} hands out an idle framework, or
+ * launches a new one, and closing the returned {@link PooledFramework} rolls
+ * the framework back to the recorded state and returns it to the pool. A
+ * framework which cannot be rolled back, for example because a base bundle
+ * was uninstalled, is stopped instead.
+ * <p>
+ * This allows test classes to run concurrently, each in a framework of its
+ * own, without paying for a framework launch per test class.
+ */
+public class FrameworkPool implements AutoCloseable {
+	private static final long					TIMEOUT		= 30;
+
+	private final FrameworkFactory				frameworkFactory;
+	private final Map<String, String>			configuration;
+	private final List<String>					baseBundles;
+	private final int							maxIdle;
+	private final BlockingDeque<PoolEntry>		idle		= new LinkedBlockingDeque<>();
+	private final AtomicBoolean					closed		= new AtomicBoolean();
+
+	/**
+	 * Create a pool of frameworks created by the first
+	 * {@link FrameworkFactory} found by {@link ServiceLoader}.
+	 *
+	 * @param configuration The framework configuration.
+	 * @param baseBundles The locations of the bundles to install and start in
+	 *            every framework.
+	 * @param maxIdle The maximum number of idle frameworks kept by the pool.
+	 * @throws IllegalStateException if no framework factory is found.
+	 */
+	public FrameworkPool(Map<String, String> configuration, List<String> baseBundles, int maxIdle) {
+		this(frameworkFactory(), configuration, baseBundles, maxIdle);
+	}
+
+	/**
+	 * Create a pool of frameworks created by the specified framework factory.
+	 * <p>
+	 * The {@value Constants#FRAMEWORK_STORAGE} property of the configuration
+	 * is replaced by a temporary directory for each framework, which is
+	 * deleted when the framework is stopped.
+	 *
+	 * @param frameworkFactory The framework factory.
+	 * @param configuration The framework configuration.
+	 * @param baseBundles The locations of the bundles to install and start in
+	 *            every framework.
+	 * @param maxIdle The maximum number of idle frameworks kept by the pool.
+	 */
+	public FrameworkPool(FrameworkFactory frameworkFactory, Map<String, String> configuration,
+		List<String> baseBundles, int maxIdle) {
+		if (maxIdle < 0) {
+			throw new IllegalArgumentException("maxIdle must be zero or greater");
+		}
+		this.frameworkFactory = requireNonNull(frameworkFactory);
+		this.configuration = new HashMap<>(configuration);
+		this.baseBundles = new ArrayList<>(baseBundles);
+		this.maxIdle = maxIdle;
+	}
+
+	private static FrameworkFactory frameworkFactory() {
+		Iterator<FrameworkFactory> factories = ServiceLoader.load(FrameworkFactory.class)
+			.iterator();
+		if (!factories.hasNext()) {
+			throw new IllegalStateException("No " + FrameworkFactory.class.getName() + " found");
+		}
+		return factories.next();
+	}
+
+	/**
+	 * Launch frameworks until the pool holds the specified number of idle
+	 * frameworks, or its maximum number of idle frameworks.
+	 *
+	 * @param count The number of idle frameworks.
+	 */
+	public void prestart(int count) {
+		while (!closed.get() && (idle.size() < Math.min(count, maxIdle))) {
+			offer(launch());
+		}
+	}
+
+	/**
+	 * Acquire a framework in the state recorded after the base bundles were
+	 * started.
+	 *
+	 * @return A framework which must be closed to return it to the pool.
+	 * @throws IllegalStateException if the pool is closed.
+	 */
+	public PooledFramework acquire() {
+		if (closed.get()) {
+			throw new IllegalStateException("The framework pool is closed");
+		}
+		PoolEntry entry = idle.poll();
+		return new Lease((entry != null) ? entry : launch());
+	}
+
+	/**
+	 * @return The number of idle frameworks held by the pool.
+	 */
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	/**
+	 * Stop the idle frameworks. Frameworks acquired from the pool are stopped
+	 * when they are closed.
+	 */
+	@Override
+	public void close() {
+		if (closed.compareAndSet(false, true)) {
+			List<PoolEntry> entries = new ArrayList<>();
+			synchronized (idle) {
+				// offer() adds under the same lock after checking closed
+				idle.drainTo(entries);
+			}
+			entries.forEach(PoolEntry::stop);
+		}
+	}
+
+	private PoolEntry launch() {
+		Path storage = null;
+		Framework framework = null;
+		try {
+			storage = Files.createTempDirectory("osgi.test.framework");
+			Map<String, String> config = new HashMap<>(configuration);
+			config.put(Constants.FRAMEWORK_STORAGE, storage.toString());
+			config.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+			framework = frameworkFactory.newFramework(config);
+			framework.start();
+			BundleContext bundleContext = framework.getBundleContext();
+			List<Bundle> bundles = new ArrayList<>(baseBundles.size());
+			for (String location : baseBundles) {
+				bundles.add(bundleContext.installBundle(location));
+			}
+			for (Bundle bundle : bundles) {
+				if (!isFragment(bundle)) {
+					bundle.start();
+				}
+			}
+			return new PoolEntry(framework, storage);
+		} catch (Exception e) {
+			new PoolEntry(framework, storage).stop();
+			throw duck(e);
+		}
+	}
+
+	private void release(PoolEntry entry) {
+		boolean reset;
+		try {
+			reset = entry.reset();
+		} catch (Exception e) {
+			entry.stop();
+			throw duck(e);
+		}
+		if (!reset || !offer(entry)) {
+			entry.stop();
+		}
+	}
+
+	private boolean offer(PoolEntry entry) {
+		synchronized (idle) {
+			// close() drains the idle frameworks after setting closed
+			if (!closed.get() && (idle.size() < maxIdle)) {
+				return idle.offer(entry);
+			}
+		}
+		return false;
+	}
+
+	static boolean isFragment(Bundle bundle) {
+		BundleRevision revision = bundle.adapt(BundleRevision.class);
+		return (revision != null) && ((revision.getTypes() & BundleRevision.TYPE_FRAGMENT) != 0);
+	}
+
+	/**
+	 * A framework acquired from a {@link FrameworkPool}. Closing it returns the
+	 * framework to the pool.
+	 */
+	@ProviderType
+	public interface PooledFramework extends AutoCloseable {
+		/**
+		 * @return The framework.
+		 */
+		Framework getFramework();
+
+		/**
+		 * Return a bundle context of the system bundle of the framework which
+		 * releases the resources obtained through it when this pooled
+		 * framework is closed, as {@link CloseableBundleContext} does.
+		 *
+		 * @return The bundle context.
+		 */
+		BundleContext getBundleContext();
+
+		/**
+		 * Return the framework to the pool, rolling it back to the recorded
+		 * state. A framework which cannot be rolled back is stopped.
+		 *
+		 * @throws RuntimeException the cause if rolling back the framework
+		 *             failed.
+		 */
+		@Override
+		void close();
+	}
+
+	private final class Lease implements PooledFramework {
+		private final PoolEntry		entry;
+		private final BundleContext	bundleContext;
+		private final AtomicBoolean	closed	= new AtomicBoolean();
+
+		Lease(PoolEntry entry) {
+			this.entry = entry;
+			this.bundleContext = CloseableBundleContext.proxy(FrameworkPool.class, entry.framework.getBundleContext());
+		}
+
+		@Override
+		public Framework getFramework() {
+			return entry.framework;
+		}
+
+		@Override
+		public BundleContext getBundleContext() {
+			return bundleContext;
+		}
+
+		@Override
+		public void close() {
+			if (closed.compareAndSet(false, true)) {
+				try {
+					CloseableBundleContext.close(bundleContext);
+				} catch (Exception e) {
+					entry.stop();
+					throw duck(e);
+				}
+				release(entry);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "PooledFramework[" + entry.framework + "]";
+		}
+	}
+
+	private static final class PoolEntry {
+		final Framework					framework;
+		private final Path				storage;
+		// the state of each bundle, by bundle id, after the base bundles
+		// started
+		private final Map<Long, Integer>	snapshot	= new HashMap<>();
+		private final int				startLevel;
+
+		PoolEntry(Framework framework, Path storage) {
+			this.framework = framework;
+			this.storage = storage;
+			if ((framework != null) && (framework.getState() == Bundle.ACTIVE)) {
+				for (Bundle bundle : framework.getBundleContext()
+					.getBundles()) {
+					snapshot.put(bundle.getBundleId(), bundle.getState());
+				}
+				FrameworkStartLevel frameworkStartLevel = framework.adapt(FrameworkStartLevel.class);
+				startLevel = (frameworkStartLevel != null) ? frameworkStartLevel.getStartLevel() : 0;
+			} else {
+				startLevel = 0;
+			}
+		}
+
+		/**
+		 * Roll the framework back to the recorded state.
+		 *
+		 * @return {@code true} if the framework was rolled back, or
+		 *         {@code false} if it must be discarded.
+		 * @throws Exception if the framework failed to roll back, in which
+		 *             case it must be discarded.
+		 */
+		boolean reset() throws Exception {
+			if (framework.getState() != Bundle.ACTIVE) {
+				return false;
+			}
+			BundleContext bundleContext = framework.getBundleContext();
+			restoreStartLevel();
+			for (Bundle bundle : bundleContext.getBundles()) {
+				if (!snapshot.containsKey(bundle.getBundleId())) {
+					bundle.uninstall();
+				}
+			}
+			refreshRemovalPending();
+			for (Map.Entry<Long, Integer> entry : snapshot.entrySet()) {
+				Bundle bundle = bundleContext.getBundle(entry.getKey());
+				if (bundle == null) {
+					return false;
+				}
+				if ((bundle == framework) || isFragment(bundle)) {
+					continue;
+				}
+				// A bundle with a lazy activation policy is recorded as
+				// STARTING, and counts as started.
+				boolean wasStarted = (entry.getValue() & (Bundle.STARTING | Bundle.ACTIVE)) != 0;
+				boolean isStarted = (bundle.getState() & (Bundle.STARTING | Bundle.ACTIVE)) != 0;
+				if (wasStarted && !isStarted) {
+					if (entry.getValue() == Bundle.STARTING) {
+						bundle.start(Bundle.START_ACTIVATION_POLICY);
+					} else {
+						bundle.start();
+					}
+				} else if (!wasStarted && isStarted) {
+					bundle.stop();
+				}
+			}
+			return true;
+		}
+
+		private void restoreStartLevel() throws InterruptedException {
+			FrameworkStartLevel frameworkStartLevel = framework.adapt(FrameworkStartLevel.class);
+			if ((frameworkStartLevel == null) || (frameworkStartLevel.getStartLevel() == startLevel)) {
+				return;
+			}
+			CountDownLatch changed = new CountDownLatch(1);
+			frameworkStartLevel.setStartLevel(startLevel, event -> changed.countDown());
+			if (!changed.await(TIMEOUT, TimeUnit.SECONDS)) {
+				throw new IllegalStateException(
+					"Start level of " + framework + " not restored to " + startLevel + " within " + TIMEOUT + "s");
+			}
+		}
+
+		private void refreshRemovalPending() throws InterruptedException {
+			FrameworkWiring frameworkWiring = framework.adapt(FrameworkWiring.class);
+			if ((frameworkWiring == null) || frameworkWiring.getRemovalPendingBundles()
+				.isEmpty()) {
+				return;
+			}
+			CountDownLatch refreshed = new CountDownLatch(1);
+			frameworkWiring.refreshBundles(null, event -> refreshed.countDown());
+			if (!refreshed.await(TIMEOUT, TimeUnit.SECONDS)) {
+				throw new IllegalStateException("Refresh of " + framework + " not completed within " + TIMEOUT + "s");
+			}
+		}
+
+		void stop() {
+			try {
+				if (framework != null) {
+					framework.stop();
+					framework.waitForStop(TimeUnit.SECONDS.toMillis(TIMEOUT));
+				}
+			} catch (BundleException | InterruptedException e) {
+				if (e instanceof InterruptedException) {
+					Thread.currentThread()
+						.interrupt();
+				}
+			} finally {
+				delete(storage);
+			}
+		}
+
+		private static void delete(Path storage) {
+			if (storage == null) {
+				return;
+			}
+			try {
+				Files.walkFileTree(storage, new SimpleFileVisitor<Path>() {
+					@Override
+					public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+						Files.delete(file);
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+						Files.delete(dir);
+						return FileVisitResult.CONTINUE;
+					}
+				});
+			} catch (IOException e) {
+				// the storage area is in the temporary directory
+			}
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.leak;
+
+/**
+ * The number of services, bundles and service listeners present in the
+ * framework at a point in time.
+ */
+public final class FrameworkSnapshot {
+	private final int	services;
+	private final int	bundles;
+	private final int	listeners;
+
+	FrameworkSnapshot(int services, int bundles, int listeners) {
+		this.services = services;
+		this.bundles = bundles;
+		this.listeners = listeners;
+	}
+
+	/**
+	 * @return The number of registered services.
+	 */
+	public int getServiceCount() {
+		return services;
+	}
+
+	/**
+	 * @return The number of installed bundles.
+	 */
+	public int getBundleCount() {
+		return bundles;
+	}
+
+	/**
+	 * @return The number of service listeners.
+	 */
+	public int getListenerCount() {
+		return listeners;
+	}
+
+	@Override
+	public String toString() {
+		return "services=" + services + ", bundles=" + bundles + ", listeners=" + listeners;
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.leak;
+
+/**
+ * A resource which was added to the framework while a {@link LeakDetector} was
+ * running and was still present when it stopped.
+ */
+public final class Leak {
+	/**
+	 * The kind of leaked resource.
+	 */
+	public enum Kind {
+		SERVICE,
+		BUNDLE,
+		LISTENER
+	}
+
+	private final Kind		kind;
+	private final String	description;
+	private final Throwable	origin;
+
+	Leak(Kind kind, String description) {
+		this.kind = kind;
+		this.description = description;
+		this.origin = new Throwable(kind + " leaked: " + description);
+	}
+
+	/**
+	 * @return The kind of leaked resource.
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return A description of the leaked resource.
+	 */
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * @return A throwable whose stack trace is that of the thread which added
+	 *         the resource at the time it was added.
+	 */
+	public Throwable getOrigin() {
+		return origin;
+	}
+
+	@Override
+	public String toString() {
+		return kind + " " + description;
+	}
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.leak;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.osgi.framework.AllServiceListener;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.Constants;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.SynchronousBundleListener;
+import org.osgi.framework.hooks.service.ListenerHook;
+import org.osgi.framework.hooks.service.ListenerHook.ListenerInfo;
+import org.osgi.test.common.exceptions.Exceptions;
+
+/**
+ * Detects services, bundles and service listeners which are added to the
+ * framework while the detector runs and are still present when it stops.
+ * <p>
+ * Unlike the cleanup done by {@code CloseableBundleContext}, this also sees
+ * resources added through any other bundle context. The framework delivers
+ * service events, synchronous bundle events and listener hook calls on the
+ * thread making the change, so the stack trace of each leaked resource's
+ * origin is captured when it is added.
+ *
+ * <pre>
+ * LeakDetector detector = new LeakDetector(bundleContext).start();
+ * // run the test
+ * detector.stop()
+ * 	.assertNoLeaks();
+ * </pre>
+ */
+public class LeakDetector implements AutoCloseable {
+	private static final ThreadLocal<Boolean>		exempt			= ThreadLocal.withInitial(() -> Boolean.FALSE);
+	private final BundleContext						bundleContext;
+	private final Map<Long, Leak>					services		= new ConcurrentHashMap<>();
+	private final Map<Long, Leak>					bundles			= new ConcurrentHashMap<>();
+	private final Map<ListenerInfo, Leak>			listeners		= new ConcurrentHashMap<>();
+	private final AtomicInteger						listenerCount	= new AtomicInteger();
+	private final AllServiceListener				serviceListener	= this::serviceChanged;
+	private final SynchronousBundleListener			bundleListener	= this::bundleChanged;
+	private volatile boolean						recording;
+	private ServiceRegistration<ListenerHook>		hook;
+	private FrameworkSnapshot						before;
+
+	public LeakDetector(BundleContext bundleContext) {
+		this.bundleContext = requireNonNull(bundleContext);
+	}
+
+	/**
+	 * Run the specified action without recording the service listeners it
+	 * adds as leaks.
+	 * <p>
+	 * This is for listeners whose lifetime is managed by the test framework
+	 * rather than by the test, such as the service trackers backing injected
+	 * services, which are closed after the detector of a test method stops or
+	 * are shared beyond a test class. The framework calls the listener hook on
+	 * the thread adding the listener, so only the listeners added by the
+	 * action on the current thread are exempt.
+	 *
+	 * @param action The action adding the listeners.
+	 * @return The result of the action.
+	 */
+	public static <T> T exemptListeners(Supplier<T> action) {
+		if (exempt.get()) {
+			return action.get();
+		}
+		exempt.set(Boolean.TRUE);
+		try {
+			return action.get();
+		} finally {
+			exempt.remove();
+		}
+	}
+
+	/**
+	 * Take a snapshot of the framework and start recording the resources
+	 * added to it.
+	 *
+	 * @return this detector
+	 */
+	public synchronized LeakDetector start() {
+		if (hook != null) {
+			throw new IllegalStateException("LeakDetector already started");
+		}
+		bundleContext.addServiceListener(serviceListener);
+		bundleContext.addBundleListener(bundleListener);
+		// The framework reports all existing listeners to a new hook; this
+		// counts them without recording them as leaks.
+		hook = bundleContext.registerService(ListenerHook.class, new Hook(), null);
+		before = snapshot();
+		recording = true;
+		return this;
+	}
+
+	/**
+	 * Stop recording and report the resources added since
+	 * {@link #start()} which are still present.
+	 *
+	 * @return the report
+	 */
+	public synchronized LeakReport stop() {
+		if (hook == null) {
+			throw new IllegalStateException("LeakDetector not started");
+		}
+		recording = false;
+		FrameworkSnapshot after = snapshot();
+		List<Leak> leaks = new ArrayList<>();
+		leaks.addAll(services.values());
+		leaks.addAll(bundles.values());
+		leaks.addAll(listeners.values());
+		close();
+		return new LeakReport(before, after, leaks);
+	}
+
+	@Override
+	public synchronized void close() {
+		recording = false;
+		if (hook != null) {
+			Exceptions.unchecked(hook::unregister);
+			hook = null;
+		}
+		bundleContext.removeBundleListener(bundleListener);
+		bundleContext.removeServiceListener(serviceListener);
+		services.clear();
+		bundles.clear();
+		listeners.clear();
+	}
+
+	private FrameworkSnapshot snapshot() {
+		ServiceReference<?>[] references;
+		try {
+			references = bundleContext.getAllServiceReferences(null, null);
+		} catch (InvalidSyntaxException e) {
+			throw Exceptions.duck(e);
+		}
+		return new FrameworkSnapshot(references == null ? 0 : references.length, bundleContext.getBundles().length,
+			listenerCount.get());
+	}
+
+	private void serviceChanged(ServiceEvent event) {
+		if (!recording) {
+			return;
+		}
+		ServiceReference<?> reference = event.getServiceReference();
+		Long id = (Long) reference.getProperty(Constants.SERVICE_ID);
+		switch (event.getType()) {
+			case ServiceEvent.REGISTERED :
+				services.put(id, new Leak(Leak.Kind.SERVICE, id + " "
+					+ Arrays.toString((String[]) reference.getProperty(Constants.OBJECTCLASS)) + " registered by "
+					+ reference.getBundle()));
+				break;
+			case ServiceEvent.UNREGISTERING :
+				services.remove(id);
+				break;
+			default :
+				break;
+		}
+	}
+
+	private void bundleChanged(BundleEvent event) {
+		if (!recording) {
+			return;
+		}
+		Bundle bundle = event.getBundle();
+		switch (event.getType()) {
+			case BundleEvent.INSTALLED :
+				bundles.put(bundle.getBundleId(), new Leak(Leak.Kind.BUNDLE, bundle + " installed from "
+					+ bundle.getLocation()));
+				break;
+			case BundleEvent.UNINSTALLED :
+				bundles.remove(bundle.getBundleId());
+				break;
+			default :
+				break;
+		}
+	}
+
+	private final class Hook implements ListenerHook {
+		@Override
+		public void added(Collection<ListenerInfo> added) {
+			for (ListenerInfo info : added) {
+				if (info.isRemoved()) {
+					continue;
+				}
+				listenerCount.incrementAndGet();
+				if (recording && !exempt.get()) {
+					listeners.put(info, new Leak(Leak.Kind.LISTENER, "service listener with filter "
+						+ info.getFilter() + " added by " + info.getBundleContext()
+							.getBundle()));
+				}
+			}
+		}
+
+		@Override
+		public void removed(Collection<ListenerInfo> removed) {
+			for (ListenerInfo info : removed) {
+				listenerCount.decrementAndGet();
+				listeners.remove(info);
+			}
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.leak;
+
+import static java.util.stream.Collectors.joining;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of running a {@link LeakDetector}.
+ */
+public final class LeakReport {
+	private final FrameworkSnapshot	before;
+	private final FrameworkSnapshot	after;
+	private final List<Leak>		leaks;
+
+	LeakReport(FrameworkSnapshot before, FrameworkSnapshot after, List<Leak> leaks) {
+		this.before = before;
+		this.after = after;
+		this.leaks = Collections.unmodifiableList(leaks);
+	}
+
+	/**
+	 * @return The state of the framework when the detector started.
+	 */
+	public FrameworkSnapshot getBefore() {
+		return before;
+	}
+
+	/**
+	 * @return The state of the framework when the detector stopped.
+	 */
+	public FrameworkSnapshot getAfter() {
+		return after;
+	}
+
+	/**
+	 * @return The resources added and not removed while the detector ran.
+	 */
+	public List<Leak> getLeaks() {
+		return leaks;
+	}
+
+	public boolean hasLeaks() {
+		return !leaks.isEmpty();
+	}
+
+	/**
+	 * @throws AssertionError if any resources leaked. The origin of each leak
+	 *             is added as a suppressed exception.
+	 */
+	public void assertNoLeaks() {
+		if (!hasLeaks()) {
+			return;
+		}
+		AssertionError error = new AssertionError(toString());
+		leaks.forEach(leak -> error.addSuppressed(leak.getOrigin()));
+		throw error;
+	}
+
+	@Override
+	public String toString() {
+		String summary = leaks.size() + " leaked resources [before: " + before + "; after: " + after + "]";
+		if (leaks.isEmpty()) {
+			return summary;
+		}
+		return leaks.stream()
+			.map(Leak::toString)
+			.collect(joining("\n\t", summary + "\n\t", ""));
+	}
+}
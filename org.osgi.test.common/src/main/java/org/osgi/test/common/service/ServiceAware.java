@@ -22,6 +22,7 @@ import java.util.SortedMap;
 import org.osgi.annotation.versioning.ProviderType;
 import org.osgi.framework.Filter;
 import org.osgi.framework.ServiceReference;
+import org.osgi.util.promise.Promise;
 
 @ProviderType
 public interface ServiceAware<T> {
@@ -48,6 +49,32 @@ public interface ServiceAware<T> {
 
 	T waitForService(long timeout) throws InterruptedException;
 
+	/**
+	 * Return a promise which is resolved with the highest ranked service once
+	 * at least one service is tracked.
+	 * <p>
+	 * The promise is resolved from the tracker callbacks, so no thread is
+	 * blocked while waiting for the service. It is failed if the tracker is
+	 * closed before a service arrives.
+	 *
+	 * @return A promise for a tracked service.
+	 */
+	Promise<T> serviceAsync();
+
+	/**
+	 * Return a promise which is resolved with the tracked services once at
+	 * least {@code count} services are tracked.
+	 * <p>
+	 * The services are in the same order as {@link #getServices()}. The
+	 * promise is resolved from the tracker callbacks, so no thread is blocked
+	 * while waiting for the services. It is failed if the tracker is closed
+	 * before enough services arrive.
+	 *
+	 * @param count The number of services to wait for.
+	 * @return A promise for the tracked services.
+	 */
+	Promise<List<T>> servicesAsync(int count);
+
 	int getCardinality();
 
 	Filter getFilter();
@@ -18,14 +18,15 @@ package org.osgi.test.common.service;
 
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
-import static org.osgi.test.common.filter.Filters.format;
+import static org.osgi.test.common.filter.Filters.objectClass;
 
-import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
@@ -33,6 +34,8 @@ import java.util.function.Function;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Filter;
 import org.osgi.framework.ServiceReference;
+import org.osgi.util.promise.Deferred;
+import org.osgi.util.promise.Promise;
 import org.osgi.util.tracker.ServiceTracker;
 import org.osgi.util.tracker.ServiceTrackerCustomizer;
 
@@ -42,17 +45,16 @@ public class ServiceConfiguration<S> implements AutoCloseable, ServiceAware<S> {
 	private final Filter					filter;
 	private final Class<S>					serviceType;
 	private final long						timeout;
-	private volatile ServiceTracker<S, S>	tracker;
+	private volatile RecordingTracker<S>	tracker;
+	private volatile CountDownLatch			countDownLatch;
+	private volatile long					endTime;
+	private final List<PendingServices<S>>	pending	= new ArrayList<>();
 
 	public ServiceConfiguration(Class<S> serviceType, String format, String[] args, int cardinality, long timeout) {
 		this.serviceType = requireNonNull(serviceType);
 
-		Filter filter = format("(objectClass=%s)", serviceType.getName());
-		format = String.format(requireNonNull(format), (Object[]) requireNonNull(args));
-		if (!format.isEmpty()) {
-			filter = format("(&%s%s)", filter.toString(), format);
-		}
-		this.filter = filter;
+		this.filter = objectClass(serviceType,
+			String.format(requireNonNull(format), (Object[]) requireNonNull(args)));
 
 		if (cardinality < 0) {
 			throw new IllegalArgumentException("cardinality must be zero or greater");
@@ -66,50 +68,99 @@ public class ServiceConfiguration<S> implements AutoCloseable, ServiceAware<S> {
 	}
 
 	public ServiceConfiguration<S> init(BundleContext bundleContext) {
+		open(bundleContext);
+		try {
+			return await();
+		} catch (AssertionError e) {
+			tracker.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Open the service tracker without waiting for the services to arrive.
+	 * <p>
+	 * The timeout starts when the tracker is opened, so several configurations
+	 * can be opened first and then awaited one after the other while waiting
+	 * no longer than the longest of their timeouts.
+	 *
+	 * @param bundleContext The bundle context used to track the services.
+	 * @return this configuration
+	 * @throws IllegalStateException if this configuration has already been
+	 *             opened.
+	 * @see #await()
+	 */
+	public ServiceConfiguration<S> open(BundleContext bundleContext) {
 		CountDownLatch countDownLatch = new CountDownLatch(getCardinality());
 
-		ServiceTracker<S, S> tracker = new ServiceTracker<>(bundleContext, getFilter(),
-			new InnerCustomizer<>(bundleContext, countDownLatch, getCustomizer()));
+		RecordingTracker<S> tracker = new RecordingTracker<>(bundleContext, getFilter(), countDownLatch,
+			getCustomizer(), this::resolvePending);
+		synchronized (this) {
+			if (this.tracker != null) {
+				throw new IllegalStateException("ServiceConfiguration has already been opened: " + this);
+			}
+			this.countDownLatch = countDownLatch;
+			this.endTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(getTimeout());
+			this.tracker = tracker;
+		}
 		tracker.open();
+		return this;
+	}
+
+	/**
+	 * Wait until the cardinality of this configuration is satisfied or the
+	 * timeout which started when it was opened has elapsed.
+	 *
+	 * @return this configuration
+	 * @throws AssertionError if the services didn't arrive within the timeout.
+	 * @throws IllegalStateException if this configuration has not been opened.
+	 */
+	public ServiceConfiguration<S> await() {
+		return await(endTime);
+	}
 
+	ServiceConfiguration<S> await(long endTime) {
+		final RecordingTracker<S> tracker = this.tracker;
+		if (tracker == null) {
+			throw new IllegalStateException("ServiceConfiguration has not been opened: " + this);
+		}
 		try {
-			final Instant endTime = Instant.now()
-				.plusMillis(getTimeout());
-			if (!countDownLatch.await(getTimeout(), TimeUnit.MILLISECONDS)) {
+			// Wait for the recorded services rather than the latch, since
+			// services may have gone away since the cardinality was reached.
+			if (!tracker.await(cardinality, endTime)) {
 				throw new AssertionError(
-					getCardinality() - tracker.size() + "/" + getCardinality() + " services " + getFilter()
+					getCardinality() - size() + "/" + getCardinality() + " services " + getFilter()
 						+ " didn't arrive within "
 						+ getTimeout() + "ms");
 			}
-
-			// CountDownLatch is fired when the last addingService() is called,
-			// but this completes before the service is actually added to the
-			// tracker. Need to poll-wait for a bit while the actual addition
-			// completes (shouldn't be long).
-			while (tracker.size() < cardinality) {
-				if (Instant.now()
-					.isAfter(endTime)) {
-
-					throw new AssertionError(
-						getCardinality() - tracker.size() + "/" + getCardinality() + " services " + getFilter()
-							+ " didn't arrive within "
-							+ getTimeout() + "ms");
-				}
-				Thread.sleep(10);
-			}
 		} catch (InterruptedException e) {
 			throw new AssertionError(e);
 		}
-		this.tracker = tracker;
 		return this;
 	}
 
+	/**
+	 * @return {@code true} if the cardinality has been reached at some point
+	 *         since this configuration was opened, even if services have since
+	 *         gone away.
+	 */
+	boolean hasArrived() {
+		final CountDownLatch countDownLatch = this.countDownLatch;
+		return countDownLatch != null && countDownLatch.getCount() == 0;
+	}
+
 	@Override
 	public void close() throws Exception {
 		final ServiceTracker<S, S> tracker = this.tracker;
 		if (tracker != null) {
 			tracker.close();
 		}
+		List<PendingServices<S>> unresolved;
+		synchronized (pending) {
+			unresolved = new ArrayList<>(pending);
+			pending.clear();
+		}
+		unresolved.forEach(p -> p.deferred.fail(new IllegalStateException("ServiceConfiguration closed: " + this)));
 	}
 
 	@Override
@@ -141,38 +192,39 @@ public class ServiceConfiguration<S> implements AutoCloseable, ServiceAware<S> {
 
 	@Override
 	public S getService() {
-		return tracker.getService();
+		SortedMap<ServiceReference<S>, S> tracked = tracker.recorded();
+		// the highest ranked service is last in natural order
+		return tracked.isEmpty() ? null : tracked.get(tracked.lastKey());
 	}
 
 	@Override
 	public S getService(ServiceReference<S> reference) {
-		return tracker.getService(reference);
+		return tracker.recorded()
+			.get(reference);
 	}
 
 	@Override
 	public ServiceReference<S> getServiceReference() {
-		return tracker.getServiceReference();
+		SortedMap<ServiceReference<S>, S> tracked = tracker.recorded();
+		return tracked.isEmpty() ? null : tracked.lastKey();
 	}
 
-	private <R> List<R> listOf(Function<ServiceReference<S>, R> mapper) {
-		ServiceReference<S>[] serviceReferences = tracker.getServiceReferences();
-		if (serviceReferences == null) {
-			return new ArrayList<>();
-		}
-		return Arrays.stream(serviceReferences)
-			.sorted()
+	private <R> List<R> listOf(Function<Map.Entry<ServiceReference<S>, S>, R> mapper) {
+		return tracker.recorded()
+			.entrySet()
+			.stream()
 			.map(mapper)
 			.collect(toList());
 	}
 
 	@Override
 	public List<ServiceReference<S>> getServiceReferences() {
-		return listOf(Function.identity());
+		return listOf(Map.Entry::getKey);
 	}
 
 	@Override
 	public List<S> getServices() {
-		return listOf(this::getService);
+		return listOf(Map.Entry::getValue);
 	}
 
 	@Override
@@ -192,17 +244,19 @@ public class ServiceConfiguration<S> implements AutoCloseable, ServiceAware<S> {
 
 	@Override
 	public SortedMap<ServiceReference<S>, S> getTracked() {
-		return tracker.getTracked();
+		return tracker.recorded();
 	}
 
 	@Override
 	public boolean isEmpty() {
-		return tracker.isEmpty();
+		return tracker.recorded()
+			.isEmpty();
 	}
 
 	@Override
 	public int size() {
-		return tracker.size();
+		return tracker.recorded()
+			.size();
 	}
 
 	@Override
@@ -210,31 +264,97 @@ public class ServiceConfiguration<S> implements AutoCloseable, ServiceAware<S> {
 		return tracker.waitForService(timeout);
 	}
 
-	private static class InnerCustomizer<S> implements ServiceTrackerCustomizer<S, S> {
+	@Override
+	public Promise<S> serviceAsync() {
+		// The services are in natural order of their service references, so
+		// the highest ranked service is last.
+		return servicesAsync(1).map(services -> services.get(services.size() - 1));
+	}
+
+	@Override
+	public Promise<List<S>> servicesAsync(int count) {
+		if (count < 0) {
+			throw new IllegalArgumentException("count must be zero or greater");
+		}
+		PendingServices<S> p = new PendingServices<>(count);
+		synchronized (pending) {
+			pending.add(p);
+		}
+		resolvePending();
+		return p.deferred.getPromise();
+	}
+
+	/**
+	 * Resolve the pending promises which are satisfied by the recorded
+	 * services.
+	 */
+	private void resolvePending() {
+		final RecordingTracker<S> tracker = this.tracker;
+		if (tracker == null) {
+			return;
+		}
+		SortedMap<ServiceReference<S>, S> tracked = tracker.recorded();
+		List<PendingServices<S>> satisfied = new ArrayList<>();
+		synchronized (pending) {
+			for (Iterator<PendingServices<S>> iter = pending.iterator(); iter.hasNext();) {
+				PendingServices<S> p = iter.next();
+				if (p.count <= tracked.size()) {
+					satisfied.add(p);
+					iter.remove();
+				}
+			}
+		}
+		if (satisfied.isEmpty()) {
+			return;
+		}
+		List<S> services = new ArrayList<>(tracked.values());
+		satisfied.forEach(p -> p.deferred.resolve(new ArrayList<>(services)));
+	}
+
+	private static final class PendingServices<S> {
+		final int						count;
+		final Deferred<List<S>>	deferred	= new Deferred<>();
+
+		PendingServices(int count) {
+			this.count = count;
+		}
+	}
+
+	/**
+	 * Records the services as soon as the customizer has added them and wakes
+	 * the threads waiting for enough services. The service tracker itself
+	 * records an added service only after addingService() returns, without a
+	 * further callback, so the configuration reads the recorded services.
+	 */
+	private static final class RecordingTracker<S> extends ServiceTracker<S, S> {
 
-		private final BundleContext								bundleContext;
 		private final CountDownLatch							countDownLatch;
 		private final Optional<ServiceTrackerCustomizer<S, S>>	delegate;
+		private final Runnable									added;
+		private final SortedMap<ServiceReference<S>, S>			recorded	= new TreeMap<>();
 
-		InnerCustomizer(BundleContext bundleContext, CountDownLatch countDownLatch,
-			ServiceTrackerCustomizer<S, S> delegate) {
-			this.bundleContext = bundleContext;
+		RecordingTracker(BundleContext bundleContext, Filter filter, CountDownLatch countDownLatch,
+			ServiceTrackerCustomizer<S, S> delegate, Runnable added) {
+			super(bundleContext, filter, null);
 			this.countDownLatch = countDownLatch;
 			this.delegate = Optional.ofNullable(delegate);
+			this.added = added;
 		}
 
 		@Override
 		public S addingService(ServiceReference<S> reference) {
-			final S service = delegate.map(c -> c.addingService(reference))
-				.orElseGet(() -> bundleContext.getService(reference));
-
-			try {
-				return service;
-			} finally {
-				if (service != null) {
-					countDownLatch.countDown();
+			final S service = delegate.isPresent() ? delegate.get()
+				.addingService(reference) : super.addingService(reference);
+
+			if (service != null) {
+				synchronized (recorded) {
+					recorded.put(reference, service);
+					recorded.notifyAll();
 				}
+				countDownLatch.countDown();
+				added.run();
 			}
+			return service;
 		}
 
 		@Override
@@ -244,13 +364,44 @@ public class ServiceConfiguration<S> implements AutoCloseable, ServiceAware<S> {
 
 		@Override
 		public void removedService(ServiceReference<S> reference, S service) {
-			delegate.map(c -> {
-				c.removedService(reference, service);
-				return true;
-			})
-				.orElseGet(() -> bundleContext.ungetService(reference));
+			synchronized (recorded) {
+				recorded.remove(reference);
+				recorded.notifyAll();
+			}
+			if (delegate.isPresent()) {
+				delegate.get()
+					.removedService(reference, service);
+			} else {
+				super.removedService(reference, service);
+			}
 		}
 
+		/**
+		 * @return A copy of the recorded services, in natural order of their
+		 *         service references.
+		 */
+		SortedMap<ServiceReference<S>, S> recorded() {
+			synchronized (recorded) {
+				return new TreeMap<>(recorded);
+			}
+		}
+
+		/**
+		 * @return {@code true} if at least cardinality services are recorded
+		 *         before the end time.
+		 */
+		boolean await(int cardinality, long endTime) throws InterruptedException {
+			synchronized (recorded) {
+				while (recorded.size() < cardinality) {
+					long remaining = endTime - System.nanoTime();
+					if (remaining <= 0L) {
+						return false;
+					}
+					TimeUnit.NANOSECONDS.timedWait(recorded, remaining);
+				}
+				return true;
+			}
+		}
 	}
 
 }
@@ -4,12 +4,14 @@ import java.util.Arrays;
 import java.util.Objects;
 
 import org.osgi.test.common.annotation.InjectService;
+import org.osgi.test.common.annotation.InjectService.Scope;
 
 public class ServiceConfigurationKey {
 
 	private final int		cardinality;
 	private final String	filter;
 	private final String[]	filterArguments;
+	private final Scope		scope;
 	private final String	serviceName;
 	private final long		timeout;
 
@@ -19,6 +21,7 @@ public class ServiceConfigurationKey {
 		this.filter = injectService.filter();
 		this.filterArguments = injectService.filterArguments();
 		this.timeout = injectService.timeout();
+		this.scope = injectService.scope();
 	}
 
 	@Override
@@ -26,7 +29,7 @@ public class ServiceConfigurationKey {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + Arrays.hashCode(filterArguments);
-		result = prime * result + Objects.hash(cardinality, filter, serviceName, timeout);
+		result = prime * result + Objects.hash(cardinality, filter, scope, serviceName, timeout);
 		return result;
 	}
 
@@ -41,7 +44,7 @@ public class ServiceConfigurationKey {
 		ServiceConfigurationKey other = (ServiceConfigurationKey) obj;
 		return cardinality == other.cardinality && Objects.equals(filter, other.filter)
 			&& Arrays.equals(filterArguments, other.filterArguments) && Objects.equals(serviceName, other.serviceName)
-			&& timeout == other.timeout;
+			&& timeout == other.timeout && scope == other.scope;
 	}
 
 }
@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.service;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.joining;
+import static org.osgi.test.common.exceptions.Exceptions.unchecked;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.osgi.annotation.versioning.ProviderType;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Filter;
+import org.osgi.framework.ServiceReference;
+import org.osgi.test.common.annotation.InjectService;
+import org.osgi.test.common.leak.LeakDetector;
+import org.osgi.util.promise.Promise;
+
+/**
+ * A pool of {@link ServiceConfiguration}s shared between injection points.
+ * <p>
+ * Configurations are keyed by their {@link ServiceConfigurationKey} and the
+ * bundle whose context is used to track the services. Each call to
+ * {@link #acquire(Class, InjectService, BundleContext)} returns a new
+ * {@link PooledServiceAware} view; the underlying service tracker is closed
+ * when the last view onto it is closed. This keeps the number of service
+ * listeners registered with the framework proportional to the number of
+ * distinct injection points in use rather than to the number of tests.
+ */
+public class ServiceConfigurationPool {
+
+	private static final ServiceConfigurationPool	defaultPool	= new ServiceConfigurationPool();
+
+	private final Map<PoolKey, PoolEntry>			entries		= new HashMap<>();
+
+	/**
+	 * @return The pool shared by all tests running in this framework.
+	 */
+	public static ServiceConfigurationPool getDefault() {
+		return defaultPool;
+	}
+
+	/**
+	 * Acquire a view onto a service configuration matching the specified
+	 * injection point, waiting for the required services to arrive.
+	 *
+	 * @param serviceType The service type.
+	 * @param injectService The injection point.
+	 * @param bundleContext The bundle context identifying the tracking bundle.
+	 * @return A view which must be closed when no longer needed.
+	 * @throws AssertionError if the required services do not arrive within the
+	 *             timeout.
+	 * @see #open(Class, InjectService, BundleContext)
+	 */
+	public <S> PooledServiceAware<S> acquire(Class<S> serviceType, InjectService injectService,
+		BundleContext bundleContext) {
+		PooledServiceAware<S> serviceAware = open(serviceType, injectService, bundleContext);
+		try {
+			return serviceAware.await();
+		} catch (Throwable t) {
+			serviceAware.close();
+			throw t;
+		}
+	}
+
+	/**
+	 * Acquire a view onto a service configuration matching the specified
+	 * injection point without waiting for the required services to arrive.
+	 * <p>
+	 * If the pool already tracks a matching configuration which has not lost
+	 * any of its required services it is shared, otherwise a new configuration
+	 * is opened. The services are tracked using the bundle context of the
+	 * bundle of the specified bundle context, so that closing a wrapping
+	 * context does not close trackers that other tests share.
+	 * <p>
+	 * The timeout of the injection point starts when this method is called.
+	 * Call {@link PooledServiceAware#await()} before using the view.
+	 *
+	 * @param serviceType The service type.
+	 * @param injectService The injection point.
+	 * @param bundleContext The bundle context identifying the tracking bundle.
+	 * @return A view which must be closed when no longer needed.
+	 */
+	public <S> PooledServiceAware<S> open(Class<S> serviceType, InjectService injectService,
+		BundleContext bundleContext) {
+		Bundle bundle = requireNonNull(bundleContext).getBundle();
+		BundleContext trackingContext = Optional.ofNullable(bundle.getBundleContext())
+			.orElse(bundleContext);
+		PoolKey key = new PoolKey(new ServiceConfigurationKey(serviceType, injectService), bundle);
+		long endTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(injectService.timeout());
+
+		PoolEntry entry;
+		synchronized (entries) {
+			entry = entries.computeIfAbsent(key, k -> new PoolEntry(k, new ServiceConfiguration<>(serviceType,
+				injectService.filter(), injectService.filterArguments(), injectService.cardinality(),
+				injectService.timeout())));
+			entry.references++;
+		}
+
+		try {
+			// The trackers outlive the leak detection of the tests using them.
+			if (LeakDetector.exemptListeners(() -> entry.open(trackingContext))) {
+				@SuppressWarnings("unchecked")
+				ServiceConfiguration<S> configuration = (ServiceConfiguration<S>) entry.configuration;
+				return new View<>(configuration, endTime, () -> release(entry));
+			}
+		} catch (Throwable t) {
+			release(entry);
+			throw t;
+		}
+		release(entry);
+
+		// The shared tracker has lost services since they arrived; wait for
+		// them with a tracker of our own.
+		ServiceConfiguration<S> configuration = LeakDetector
+			.exemptListeners(() -> new ServiceConfiguration<>(serviceType, injectService.filter(),
+				injectService.filterArguments(), injectService.cardinality(), injectService.timeout())
+					.open(trackingContext));
+		return new View<>(configuration, endTime, () -> unchecked(configuration::close));
+	}
+
+	/**
+	 * Wait for all of the specified injection points, reporting every
+	 * injection point whose services didn't arrive in a single
+	 * {@link AssertionError}.
+	 *
+	 * @param serviceAwares The injection points.
+	 * @param await Waits for an injection point, throwing an
+	 *            {@link AssertionError} if its services didn't arrive.
+	 * @throws AssertionError if the services of any of the injection points
+	 *             didn't arrive.
+	 */
+	public static <T> void awaitAll(Collection<? extends T> serviceAwares, Consumer<? super T> await) {
+		List<AssertionError> failures = new ArrayList<>();
+		for (T serviceAware : serviceAwares) {
+			try {
+				await.accept(serviceAware);
+			} catch (AssertionError e) {
+				failures.add(e);
+			}
+		}
+		if (failures.size() == 1) {
+			throw failures.get(0);
+		}
+		if (!failures.isEmpty()) {
+			AssertionError error = new AssertionError(failures.stream()
+				.map(AssertionError::getMessage)
+				.collect(joining("\n", failures.size() + " injection points failed:\n", "")));
+			failures.forEach(error::addSuppressed);
+			throw error;
+		}
+	}
+
+	/**
+	 * @return The number of service trackers currently held by the pool.
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	private void release(PoolEntry entry) {
+		synchronized (entries) {
+			if (--entry.references > 0) {
+				return;
+			}
+			entries.remove(entry.key);
+		}
+		unchecked(entry.configuration::close);
+	}
+
+	/**
+	 * A view onto a pooled {@link ServiceConfiguration}. Closing the view
+	 * releases the view's reference to the pooled configuration.
+	 *
+	 * @param <S> The service type.
+	 */
+	@ProviderType
+	public interface PooledServiceAware<S> extends ServiceAware<S>, AutoCloseable {
+		/**
+		 * Wait until the cardinality of the injection point is satisfied or
+		 * its timeout, which started when this view was acquired, has
+		 * elapsed.
+		 *
+		 * @return this view
+		 * @throws AssertionError if the services didn't arrive within the
+		 *             timeout.
+		 */
+		PooledServiceAware<S> await();
+
+		@Override
+		void close();
+	}
+
+	private static final class PoolKey {
+		private final ServiceConfigurationKey	configurationKey;
+		private final Bundle					bundle;
+
+		PoolKey(ServiceConfigurationKey configurationKey, Bundle bundle) {
+			this.configurationKey = configurationKey;
+			this.bundle = bundle;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(configurationKey, bundle);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof PoolKey)) {
+				return false;
+			}
+			PoolKey other = (PoolKey) obj;
+			return configurationKey.equals(other.configurationKey) && bundle.equals(other.bundle);
+		}
+	}
+
+	private static final class PoolEntry {
+		final PoolKey					key;
+		final ServiceConfiguration<?>	configuration;
+		// guarded by the pool's entries
+		int								references;
+		private boolean					opened;
+
+		PoolEntry(PoolKey key, ServiceConfiguration<?> configuration) {
+			this.key = key;
+			this.configuration = configuration;
+		}
+
+		/**
+		 * @return {@code true} if the configuration can be shared, or
+		 *         {@code false} if it has lost services since they arrived.
+		 */
+		synchronized boolean open(BundleContext bundleContext) {
+			if (!opened) {
+				configuration.open(bundleContext);
+				opened = true;
+				return true;
+			}
+			return !configuration.hasArrived() || configuration.size() >= configuration.getCardinality();
+		}
+	}
+
+	private static final class View<S> implements PooledServiceAware<S> {
+		private final ServiceConfiguration<S>	configuration;
+		private final long						endTime;
+		private final Runnable					release;
+		private final AtomicBoolean				closed	= new AtomicBoolean();
+
+		View(ServiceConfiguration<S> configuration, long endTime, Runnable release) {
+			this.configuration = configuration;
+			this.endTime = endTime;
+			this.release = release;
+		}
+
+		@Override
+		public PooledServiceAware<S> await() {
+			configuration.await(endTime);
+			return this;
+		}
+
+		@Override
+		public void close() {
+			if (closed.compareAndSet(false, true)) {
+				release.run();
+			}
+		}
+
+		@Override
+		public String toString() {
+			return configuration.toString();
+		}
+
+		@Override
+		public S getService() {
+			return configuration.getService();
+		}
+
+		@Override
+		public S getService(ServiceReference<S> reference) {
+			return configuration.getService(reference);
+		}
+
+		@Override
+		public List<S> getServices() {
+			return configuration.getServices();
+		}
+
+		@Override
+		public ServiceReference<S> getServiceReference() {
+			return configuration.getServiceReference();
+		}
+
+		@Override
+		public List<ServiceReference<S>> getServiceReferences() {
+			return configuration.getServiceReferences();
+		}
+
+		@Override
+		public Class<S> getServiceType() {
+			return configuration.getServiceType();
+		}
+
+		@Override
+		public SortedMap<ServiceReference<S>, S> getTracked() {
+			return configuration.getTracked();
+		}
+
+		@Override
+		public int getTrackingCount() {
+			return configuration.getTrackingCount();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return configuration.isEmpty();
+		}
+
+		@Override
+		public int size() {
+			return configuration.size();
+		}
+
+		@Override
+		public S waitForService(long timeout) throws InterruptedException {
+			return configuration.waitForService(timeout);
+		}
+
+		@Override
+		public Promise<S> serviceAsync() {
+			return configuration.serviceAsync();
+		}
+
+		@Override
+		public Promise<List<S>> servicesAsync(int count) {
+			return configuration.servicesAsync(count);
+		}
+
+		@Override
+		public int getCardinality() {
+			return configuration.getCardinality();
+		}
+
+		@Override
+		public Filter getFilter() {
+			return configuration.getFilter();
+		}
+
+		@Override
+		public long getTimeout() {
+			return configuration.getTimeout();
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package org.osgi.test.common.stream;
+
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.Map.Entry;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A sized spliterator over a snapshot of the entries of a dictionary.
+ * <p>
+ * A dictionary can only be enumerated sequentially, so its keys and values
+ * are copied into an array when the spliterator is created. The array is then
+ * split in halves, so the entries can be processed in parallel. Entries are
+ * created as they are traversed.
+ */
+final class DictionarySpliterator<K, V> implements Spliterator<Entry<K, V>> {
+	private static final int	CHARACTERISTICS	= Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.DISTINCT
+		| Spliterator.NONNULL | Spliterator.IMMUTABLE;
+
+	// key at 2 * i, value at 2 * i + 1
+	private final Object[]		entries;
+	private int					index;
+	private final int			fence;
+
+	DictionarySpliterator(Dictionary<? extends K, ? extends V> dictionary) {
+		Object[] array = new Object[2 * dictionary.size()];
+		int size = 0;
+		for (Enumeration<? extends K> keys = dictionary.keys(); keys.hasMoreElements();) {
+			K key = keys.nextElement();
+			V value = dictionary.get(key);
+			// skip keys removed while enumerating
+			if (value != null) {
+				if (2 * size == array.length) {
+					Object[] grown = new Object[Math.max(2 * array.length, 16)];
+					System.arraycopy(array, 0, grown, 0, array.length);
+					array = grown;
+				}
+				array[2 * size] = key;
+				array[2 * size + 1] = value;
+				size++;
+			}
+		}
+		this.entries = array;
+		this.index = 0;
+		this.fence = size;
+	}
+
+	private DictionarySpliterator(Object[] entries, int index, int fence) {
+		this.entries = entries;
+		this.index = index;
+		this.fence = fence;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Entry<K, V> entry(int i) {
+		return MapStream.entry((K) entries[2 * i], (V) entries[2 * i + 1]);
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super Entry<K, V>> action) {
+		if (index < fence) {
+			action.accept(entry(index++));
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super Entry<K, V>> action) {
+		for (int i = index, end = fence; i < end; i++) {
+			action.accept(entry(i));
+		}
+		index = fence;
+	}
+
+	@Override
+	public Spliterator<Entry<K, V>> trySplit() {
+		int lo = index;
+		int mid = (lo + fence) >>> 1;
+		if (lo >= mid) {
+			return null;
+		}
+		index = mid;
+		return new DictionarySpliterator<>(entries, lo, mid);
+	}
+
+	@Override
+	public long estimateSize() {
+		return fence - index;
+	}
+
+	@Override
+	public int characteristics() {
+		return CHARACTERISTICS;
+	}
+}
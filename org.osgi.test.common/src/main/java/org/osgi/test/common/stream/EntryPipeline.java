@@ -24,27 +24,79 @@ import java.util.stream.LongStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+/**
+ * A MapStream over a stream of entries.
+ * <p>
+ * Consecutive filter, map, mapKey, mapValue and peek operations are fused into
+ * a single stage which holds the key and value of each element in separate
+ * slots, so no entry is created between these operations. An entry is only
+ * created, if the key or value was mapped, when the elements leave the fused
+ * stage as entries. Operations consuming keys and values, such as keys,
+ * values, forEach and mapToObj, create no entry at all.
+ */
 final class EntryPipeline<K, V> implements MapStream<K, V> {
-	private final Stream<Entry<K, V>> stream;
+	private final Stream<? extends Entry<?, ?>>	source;
+	// the fused stage applied to the source, or null if none
+	private final Stage							stage;
 
-	@SuppressWarnings("unchecked")
 	EntryPipeline(Stream<? extends Entry<? extends K, ? extends V>> stream) {
-		this.stream = requireNonNull((Stream<Entry<K, V>>) stream);
+		this(stream, null);
+	}
+
+	private EntryPipeline(Stream<? extends Entry<?, ?>> source, Stage stage) {
+		this.source = requireNonNull(source);
+		this.stage = stage;
+	}
+
+	private <R, S> MapStream<R, S> fuse(Stage next) {
+		return new EntryPipeline<>(source, (stage == null) ? next : stage.andThen(next));
+	}
+
+	/**
+	 * The slots of the elements leaving the fused stage. The slots are reused
+	 * for each element, so they must be consumed by a stateless operation
+	 * which does not hold on to them. They must never reach an operation which
+	 * can buffer elements, such as {@code forEachOrdered} on a parallel
+	 * stream; use {@link #entries()} instead.
+	 */
+	private Stream<Slots> slots() {
+		return StreamSupport.stream(new Fused(source.spliterator(), stage), source.isParallel())
+			.onClose(source::close);
+	}
+
+	@SuppressWarnings("unchecked")
+	private K key(Slots slots) {
+		return (K) slots.key;
+	}
+
+	@SuppressWarnings("unchecked")
+	private V value(Slots slots) {
+		return (V) slots.value;
 	}
 
 	@Override
+	@SuppressWarnings("unchecked")
 	public Stream<Entry<K, V>> entries() {
-		return stream;
+		if (stage == null) {
+			return (Stream<Entry<K, V>>) source;
+		}
+		return slots().map(slots -> (Entry<K, V>) slots.entry());
 	}
 
 	@Override
 	public Stream<K> keys() {
-		return entries().map(Entry::getKey);
+		if (stage == null) {
+			return entries().map(Entry::getKey);
+		}
+		return slots().map(this::key);
 	}
 
 	@Override
 	public Stream<V> values() {
-		return entries().map(Entry::getValue);
+		if (stage == null) {
+			return entries().map(Entry::getValue);
+		}
+		return slots().map(this::value);
 	}
 
 	@Override
@@ -59,36 +111,36 @@ final class EntryPipeline<K, V> implements MapStream<K, V> {
 
 	@Override
 	public boolean isParallel() {
-		return entries().isParallel();
+		return source.isParallel();
 	}
 
 	@Override
 	public MapStream<K, V> sequential() {
-		Stream<Entry<K, V>> sequential = entries().sequential();
-		return (entries() == sequential) ? this : new EntryPipeline<>(sequential);
+		Stream<? extends Entry<?, ?>> sequential = source.sequential();
+		return (source == sequential) ? this : new EntryPipeline<>(sequential, stage);
 	}
 
 	@Override
 	public MapStream<K, V> parallel() {
-		Stream<Entry<K, V>> parallel = entries().parallel();
-		return (entries() == parallel) ? this : new EntryPipeline<>(parallel);
+		Stream<? extends Entry<?, ?>> parallel = source.parallel();
+		return (source == parallel) ? this : new EntryPipeline<>(parallel, stage);
 	}
 
 	@Override
 	public MapStream<K, V> unordered() {
-		Stream<Entry<K, V>> unordered = entries().unordered();
-		return (entries() == unordered) ? this : new EntryPipeline<>(unordered);
+		Stream<? extends Entry<?, ?>> unordered = source.unordered();
+		return (source == unordered) ? this : new EntryPipeline<>(unordered, stage);
 	}
 
 	@Override
 	public MapStream<K, V> onClose(Runnable closeHandler) {
-		Stream<Entry<K, V>> onClose = entries().onClose(closeHandler);
-		return (entries() == onClose) ? this : new EntryPipeline<>(onClose);
+		Stream<? extends Entry<?, ?>> onClose = source.onClose(closeHandler);
+		return (source == onClose) ? this : new EntryPipeline<>(onClose, stage);
 	}
 
 	@Override
 	public void close() {
-		entries().close();
+		source.close();
 	}
 
 	@Override
@@ -99,112 +151,130 @@ final class EntryPipeline<K, V> implements MapStream<K, V> {
 	@Override
 	public MapStream<K, V> filter(BiPredicate<? super K, ? super V> filter) {
 		requireNonNull(filter);
-		return new EntryPipeline<>(entries().filter(e -> filter.test(e.getKey(), e.getValue())));
+		return fuse(slots -> filter.test(key(slots), value(slots)));
 	}
 
 	@Override
 	public MapStream<K, V> filterKey(Predicate<? super K> filter) {
 		requireNonNull(filter);
-		return new EntryPipeline<>(entries().filter(e -> filter.test(e.getKey())));
+		return fuse(slots -> filter.test(key(slots)));
 	}
 
 	@Override
 	public MapStream<K, V> filterValue(Predicate<? super V> filter) {
 		requireNonNull(filter);
-		return new EntryPipeline<>(entries().filter(e -> filter.test(e.getValue())));
+		return fuse(slots -> filter.test(value(slots)));
 	}
 
 	@Override
 	public <R, S> MapStream<R, S> map(
 		BiFunction<? super K, ? super V, ? extends Entry<? extends R, ? extends S>> mapper) {
 		requireNonNull(mapper);
-		return new EntryPipeline<>(entries().map(e -> mapper.apply(e.getKey(), e.getValue())));
+		return fuse(slots -> {
+			slots.accept(mapper.apply(key(slots), value(slots)));
+			return true;
+		});
 	}
 
 	@Override
 	public <R> MapStream<R, V> mapKey(Function<? super K, ? extends R> mapper) {
 		requireNonNull(mapper);
-		return new EntryPipeline<>(entries().map(e -> MapStream.entry(mapper.apply(e.getKey()), e.getValue())));
+		return fuse(slots -> {
+			slots.key(mapper.apply(key(slots)));
+			return true;
+		});
 	}
 
 	@Override
 	public <S> MapStream<K, S> mapValue(Function<? super V, ? extends S> mapper) {
 		requireNonNull(mapper);
-		return new EntryPipeline<>(entries().map(e -> MapStream.entry(e.getKey(), mapper.apply(e.getValue()))));
+		return fuse(slots -> {
+			slots.value(mapper.apply(value(slots)));
+			return true;
+		});
 	}
 
 	@Override
 	public <R> Stream<R> mapToObj(BiFunction<? super K, ? super V, ? extends R> mapper) {
 		requireNonNull(mapper);
-		return entries().map(e -> mapper.apply(e.getKey(), e.getValue()));
+		return slots().map(slots -> mapper.apply(key(slots), value(slots)));
 	}
 
 	@Override
 	public IntStream mapToInt(ToIntBiFunction<? super K, ? super V> mapper) {
 		requireNonNull(mapper);
-		return entries().mapToInt(e -> mapper.applyAsInt(e.getKey(), e.getValue()));
+		return slots().mapToInt(slots -> mapper.applyAsInt(key(slots), value(slots)));
 	}
 
 	@Override
 	public LongStream mapToLong(ToLongBiFunction<? super K, ? super V> mapper) {
 		requireNonNull(mapper);
-		return entries().mapToLong(e -> mapper.applyAsLong(e.getKey(), e.getValue()));
+		return slots().mapToLong(slots -> mapper.applyAsLong(key(slots), value(slots)));
 	}
 
 	@Override
 	public DoubleStream mapToDouble(ToDoubleBiFunction<? super K, ? super V> mapper) {
 		requireNonNull(mapper);
-		return entries().mapToDouble(e -> mapper.applyAsDouble(e.getKey(), e.getValue()));
+		return slots().mapToDouble(slots -> mapper.applyAsDouble(key(slots), value(slots)));
 	}
 
 	@Override
 	public <R, S> MapStream<R, S> flatMap(
 		BiFunction<? super K, ? super V, ? extends MapStream<? extends R, ? extends S>> mapper) {
 		requireNonNull(mapper);
-		return new EntryPipeline<>(entries().flatMap(e -> mapper.apply(e.getKey(), e.getValue())
+		return new EntryPipeline<>(slots().flatMap(slots -> mapper.apply(key(slots), value(slots))
 			.entries()));
 	}
 
 	@Override
 	public <R> Stream<R> flatMapToObj(BiFunction<? super K, ? super V, ? extends Stream<? extends R>> mapper) {
 		requireNonNull(mapper);
-		return entries().flatMap(e -> mapper.apply(e.getKey(), e.getValue()));
+		return slots().flatMap(slots -> mapper.apply(key(slots), value(slots)));
 	}
 
 	@Override
 	public IntStream flatMapToInt(BiFunction<? super K, ? super V, ? extends IntStream> mapper) {
 		requireNonNull(mapper);
-		return entries().flatMapToInt(e -> mapper.apply(e.getKey(), e.getValue()));
+		return slots().flatMapToInt(slots -> mapper.apply(key(slots), value(slots)));
 	}
 
 	@Override
 	public LongStream flatMapToLong(BiFunction<? super K, ? super V, ? extends LongStream> mapper) {
 		requireNonNull(mapper);
-		return entries().flatMapToLong(e -> mapper.apply(e.getKey(), e.getValue()));
+		return slots().flatMapToLong(slots -> mapper.apply(key(slots), value(slots)));
 	}
 
 	@Override
 	public DoubleStream flatMapToDouble(BiFunction<? super K, ? super V, ? extends DoubleStream> mapper) {
 		requireNonNull(mapper);
-		return entries().flatMapToDouble(e -> mapper.apply(e.getKey(), e.getValue()));
+		return slots().flatMapToDouble(slots -> mapper.apply(key(slots), value(slots)));
 	}
 
 	@Override
 	public MapStream<K, V> peek(BiConsumer<? super K, ? super V> peek) {
 		requireNonNull(peek);
-		return new EntryPipeline<>(entries().peek(e -> peek.accept(e.getKey(), e.getValue())));
+		return fuse(slots -> {
+			peek.accept(key(slots), value(slots));
+			return true;
+		});
 	}
 
 	@Override
 	public MapStream<K, V> peekKey(Consumer<? super K> peek) {
 		requireNonNull(peek);
-		return new EntryPipeline<>(entries().peek(e -> peek.accept(e.getKey())));
+		return fuse(slots -> {
+			peek.accept(key(slots));
+			return true;
+		});
 	}
 
 	@Override
 	public MapStream<K, V> peekValue(Consumer<? super V> peek) {
 		requireNonNull(peek);
-		return new EntryPipeline<>(entries().peek(e -> peek.accept(e.getValue())));
+		return fuse(slots -> {
+			peek.accept(value(slots));
+			return true;
+		});
 	}
 
 	@SuppressWarnings({
@@ -277,36 +347,38 @@ final class EntryPipeline<K, V> implements MapStream<K, V> {
 	@Override
 	public void forEach(BiConsumer<? super K, ? super V> consumer) {
 		requireNonNull(consumer);
-		entries().forEach(e -> consumer.accept(e.getKey(), e.getValue()));
+		slots().forEach(slots -> consumer.accept(key(slots), value(slots)));
 	}
 
 	@Override
 	public void forEachOrdered(BiConsumer<? super K, ? super V> consumer) {
 		requireNonNull(consumer);
-		entries().forEachOrdered(e -> consumer.accept(e.getKey(), e.getValue()));
+		// A parallel forEachOrdered buffers elements, so each element must be
+		// an entry of its own.
+		entries().forEachOrdered(entry -> consumer.accept(entry.getKey(), entry.getValue()));
 	}
 
 	@Override
 	public long count() {
-		return entries().count();
+		return slots().count();
 	}
 
 	@Override
 	public boolean anyMatch(BiPredicate<? super K, ? super V> predicate) {
 		requireNonNull(predicate);
-		return entries().anyMatch(e -> predicate.test(e.getKey(), e.getValue()));
+		return slots().anyMatch(slots -> predicate.test(key(slots), value(slots)));
 	}
 
 	@Override
 	public boolean allMatch(BiPredicate<? super K, ? super V> predicate) {
 		requireNonNull(predicate);
-		return entries().allMatch(e -> predicate.test(e.getKey(), e.getValue()));
+		return slots().allMatch(slots -> predicate.test(key(slots), value(slots)));
 	}
 
 	@Override
 	public boolean noneMatch(BiPredicate<? super K, ? super V> predicate) {
 		requireNonNull(predicate);
-		return entries().noneMatch(e -> predicate.test(e.getKey(), e.getValue()));
+		return slots().noneMatch(slots -> predicate.test(key(slots), value(slots)));
 	}
 
 	@Override
@@ -496,4 +568,106 @@ final class EntryPipeline<K, V> implements MapStream<K, V> {
 			}
 		}
 	}
+
+	/**
+	 * A fused stage operating on the slots of an element.
+	 */
+	@FunctionalInterface
+	interface Stage {
+		/**
+		 * @return {@code false} if the element is dropped.
+		 */
+		boolean apply(Slots slots);
+
+		default Stage andThen(Stage next) {
+			return slots -> apply(slots) && next.apply(slots);
+		}
+	}
+
+	/**
+	 * The key and value of the current element of a fused stage.
+	 */
+	static final class Slots implements Consumer<Entry<?, ?>> {
+		// the entry holding the key and value, or null if either was mapped
+		private Entry<?, ?>	entry;
+		Object				key;
+		Object				value;
+
+		@Override
+		public void accept(Entry<?, ?> entry) {
+			this.entry = entry;
+			this.key = entry.getKey();
+			this.value = entry.getValue();
+		}
+
+		void key(Object key) {
+			this.entry = null;
+			this.key = key;
+		}
+
+		void value(Object value) {
+			this.entry = null;
+			this.value = value;
+		}
+
+		Entry<?, ?> entry() {
+			return (entry != null) ? entry : MapStream.entry(key, value);
+		}
+	}
+
+	/**
+	 * Applies a fused stage to the entries of a spliterator. The same slots are
+	 * passed to the action for each element.
+	 */
+	static final class Fused implements Spliterator<Slots> {
+		private final Spliterator<? extends Entry<?, ?>>	spliterator;
+		private final Stage									stage;
+		private final Slots									slots	= new Slots();
+
+		Fused(Spliterator<? extends Entry<?, ?>> spliterator, Stage stage) {
+			this.spliterator = spliterator;
+			this.stage = stage;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Slots> action) {
+			while (spliterator.tryAdvance(slots)) {
+				if ((stage == null) || stage.apply(slots)) {
+					action.accept(slots);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super Slots> action) {
+			spliterator.forEachRemaining(entry -> {
+				slots.accept(entry);
+				if ((stage == null) || stage.apply(slots)) {
+					action.accept(slots);
+				}
+			});
+		}
+
+		@Override
+		public Spliterator<Slots> trySplit() {
+			Spliterator<? extends Entry<?, ?>> split = spliterator.trySplit();
+			return (split == null) ? null : new Fused(split, stage);
+		}
+
+		@Override
+		public long estimateSize() {
+			return spliterator.estimateSize();
+		}
+
+		@Override
+		public int characteristics() {
+			int characteristics = spliterator.characteristics() & ~(Spliterator.SORTED | Spliterator.DISTINCT);
+			if (stage != null) {
+				characteristics &= ~(Spliterator.SIZED | Spliterator.SUBSIZED);
+			}
+			return characteristics | Spliterator.NONNULL;
+		}
+	}
 }
@@ -4,6 +4,7 @@ import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Dictionary;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
@@ -25,6 +26,9 @@ import java.util.stream.DoubleStream;
 import java.util.stream.IntStream;
 import java.util.stream.LongStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.osgi.framework.Bundle;
 
 public interface MapStream<K, V> extends BaseStream<Entry<K, V>, MapStream<K, V>> {
 	static <K, V> MapStream<K, V> of(Map<? extends K, ? extends V> map) {
@@ -35,6 +39,28 @@ public interface MapStream<K, V> extends BaseStream<Entry<K, V>, MapStream<K, V>
 		return (map != null) ? of(map) : empty();
 	}
 
+	/**
+	 * Create a MapStream over a snapshot of the entries of a dictionary. The
+	 * snapshot is taken when this method is called and is split evenly for
+	 * parallel processing.
+	 * <p>
+	 * This method is not an overload of {@link #of(Map)} since a
+	 * {@code Hashtable} is both a dictionary and a map.
+	 */
+	static <K, V> MapStream<K, V> ofDictionary(Dictionary<? extends K, ? extends V> dictionary) {
+		return of(StreamSupport.stream(new DictionarySpliterator<K, V>(dictionary), false));
+	}
+
+	/**
+	 * Create a MapStream over a snapshot of the localized manifest headers of a
+	 * bundle.
+	 *
+	 * @see Bundle#getHeaders()
+	 */
+	static MapStream<String, String> ofHeaders(Bundle bundle) {
+		return ofDictionary(bundle.getHeaders());
+	}
+
 	static <K, V> MapStream<K, V> of(Collection<? extends Entry<? extends K, ? extends V>> collection) {
 		return of(collection.stream());
 	}
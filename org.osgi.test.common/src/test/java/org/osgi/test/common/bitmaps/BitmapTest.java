@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.bitmaps;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.osgi.framework.Bundle;
+
+public class BitmapTest {
+
+	@Test
+	public void toStringSingleBit() {
+		assertThat(BundleState.BITMAP.toString(Bundle.ACTIVE)).isEqualTo("ACTIVE");
+		assertThat(BundleState.BITMAP.toString(Bundle.INSTALLED)).isEqualTo("INSTALLED");
+		assertThat(BundleState.BITMAP.toString(1 << 31)).isEqualTo("UNKNOWN");
+		assertThatIllegalArgumentException().isThrownBy(() -> BundleState.BITMAP.toString(3));
+	}
+
+	@Test
+	public void maskToString() {
+		assertThat(BundleState.BITMAP.maskToString(0)).isEqualTo("0:");
+		assertThat(BundleState.BITMAP.maskToString(Bundle.INSTALLED | Bundle.RESOLVED))
+			.isEqualTo("6:INSTALLED | RESOLVED");
+		assertThat(BundleState.BITMAP.maskToString(Bundle.UNINSTALLED | 64)).isEqualTo("65:UNINSTALLED | UNKNOWN");
+		assertThat(BundleState.BITMAP.maskToString(128)).isEqualTo("128:UNKNOWN");
+	}
+
+	@Test
+	public void mapping() {
+		Map<Integer, String> mapping = new HashMap<>();
+		mapping.put(4, "FOUR");
+		mapping.put(1, "ONE");
+		Bitmap bitmap = new Bitmap(mapping);
+		assertThat(bitmap.toString(1)).isEqualTo("ONE");
+		assertThat(bitmap.toString(2)).isEqualTo("UNKNOWN");
+		assertThat(bitmap.maskToString(7)).isEqualTo("7:ONE | FOUR | UNKNOWN");
+	}
+
+	@Test
+	public void appendTo() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		BundleState.BITMAP.appendTo(sb, Bundle.STARTING | Bundle.ACTIVE);
+		assertThat(sb).hasToString("40:STARTING | ACTIVE");
+		sb.setLength(0);
+		assertThat(BundleState.BITMAP.appendTo(sb, Bundle.RESOLVED)).hasToString("4:RESOLVED");
+
+		StringWriter writer = new StringWriter();
+		BundleState.BITMAP.appendTo(writer, Bundle.STOPPING)
+			.append(", ");
+		BundleState.BITMAP.appendTo(writer, 256);
+		assertThat(writer).hasToString("16:STOPPING, 256:UNKNOWN");
+	}
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.context;
+
+/**
+ * Runs the {@link CloseableBundleContextTest} tests against the
+ * {@link java.lang.reflect.Proxy} implementation, which is otherwise only
+ * used when the framework provides a newer {@code BundleContext} interface.
+ */
+public class CloseableBundleContextProxyTest extends CloseableBundleContextTest {
+	@Override
+	boolean delegating() {
+		return false;
+	}
+}
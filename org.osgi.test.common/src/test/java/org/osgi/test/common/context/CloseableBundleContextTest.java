@@ -1,6 +1,10 @@
 package org.osgi.test.common.context;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
@@ -8,6 +12,9 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+
 import org.assertj.core.api.Assertions;
 import org.assertj.core.api.SoftAssertions;
 import org.junit.jupiter.api.AfterEach;
@@ -16,9 +23,20 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.InOrder;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.Constants;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceListener;
 import org.osgi.framework.ServiceObjects;
 import org.osgi.framework.ServiceReference;
+import org.osgi.framework.wiring.FrameworkWiring;
+import org.osgi.test.common.context.CloseableBundleContext.CleanupMode;
+import org.osgi.test.common.context.CloseableBundleContext.Phase;
 
 public class CloseableBundleContextTest extends SoftAssertions {
 	BundleContext			upstream;
@@ -27,7 +45,20 @@ public class CloseableBundleContextTest extends SoftAssertions {
 	@BeforeEach
 	void beforeEach() {
 		upstream = mock(BundleContext.class);
-		sut = CloseableBundleContext.proxy(CloseableBundleContextTest.class, upstream);
+		sut = proxy(upstream, CloseableBundleContext.defaultCleanupMode(upstream));
+	}
+
+	/**
+	 * Whether the tests dispatch through a {@link DelegatingBundleContext} or a
+	 * {@link Proxy}.
+	 */
+	boolean delegating() {
+		return true;
+	}
+
+	BundleContext proxy(BundleContext bundleContext, CleanupMode cleanupMode) {
+		return CloseableBundleContext.proxy(CloseableBundleContextTest.class, bundleContext, cleanupMode,
+			delegating());
 	}
 
 	@ParameterizedTest
@@ -60,6 +91,88 @@ public class CloseableBundleContextTest extends SoftAssertions {
 		// ((AutoCloseable) sut).close();
 	}
 
+	@Test
+	void dispatchesThroughExpectedImplementation() {
+		assertThat(Proxy.isProxyClass(sut.getClass())).isEqualTo(!delegating());
+		assertThat(sut instanceof DelegatingBundleContext).isEqualTo(delegating());
+	}
+
+	@Test
+	void close_removesListeners() {
+		ServiceListener listener = mock(ServiceListener.class);
+		sut.addServiceListener(listener);
+		CloseableBundleContext.close(sut);
+		check(() -> verify(upstream).removeServiceListener(listener));
+	}
+
+	@Test
+	void phasedClose_removesListenersFirst_andRefreshesOnce() throws Exception {
+		Bundle systemBundle = mock(Bundle.class);
+		FrameworkWiring frameworkWiring = mock(FrameworkWiring.class);
+		when(upstream.getBundle(Constants.SYSTEM_BUNDLE_LOCATION)).thenReturn(systemBundle);
+		when(systemBundle.adapt(FrameworkWiring.class)).thenReturn(frameworkWiring);
+		doAnswer(invocation -> {
+			((FrameworkListener) invocation.getArgument(1)).frameworkEvent(null);
+			return null;
+		}).when(frameworkWiring)
+			.refreshBundles(anyCollection(), any(FrameworkListener.class));
+		Bundle b1 = mock(Bundle.class);
+		Bundle b2 = mock(Bundle.class);
+		when(upstream.installBundle("b1")).thenReturn(b1);
+		when(upstream.installBundle("b2")).thenReturn(b2);
+
+		BundleContext phased = proxy(upstream, CleanupMode.PHASED);
+		BundleListener listener = mock(BundleListener.class);
+		phased.addBundleListener(listener);
+		phased.installBundle("b1");
+		phased.installBundle("b2");
+		CloseableBundleContext.close(phased);
+
+		for (Bundle b : Arrays.asList(b1, b2)) {
+			InOrder inOrder = inOrder(upstream, b, frameworkWiring);
+			check(() -> inOrder.verify(upstream)
+				.removeBundleListener(listener));
+			check(() -> inOrder.verify(b)
+				.uninstall());
+			check(() -> inOrder.verify(frameworkWiring)
+				.refreshBundles(argThat(c -> c.size() == 2 && c.contains(b)), any(FrameworkListener.class)));
+		}
+		assertThat(CloseableBundleContext.getCleanupTimings(phased)).containsOnlyKeys(Phase.values());
+	}
+
+	@Test
+	void defaultCleanupMode_parsesProperty() {
+		when(upstream.getProperty(CloseableBundleContext.CLEANUP_MODE)).thenReturn(" phased ");
+		assertThat(CloseableBundleContext.defaultCleanupMode(upstream)).isEqualTo(CleanupMode.PHASED);
+	}
+
+	@Test
+	void defaultCleanupMode_invalidValue_reportsPropertyAndAllowedValues() {
+		when(upstream.getProperty(CloseableBundleContext.CLEANUP_MODE)).thenReturn("phaseed");
+		assertThatCode(() -> CloseableBundleContext.defaultCleanupMode(upstream))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessageContaining("phaseed")
+			.hasMessageContaining(CloseableBundleContext.CLEANUP_MODE)
+			.hasMessageContaining("SEQUENTIAL")
+			.hasMessageContaining("PHASED");
+	}
+
+	@Test
+	void unmodifiedMethods_passedThrough() {
+		when(upstream.getProperty("key")).thenReturn("value");
+		assertThat(sut.getProperty("key")).isEqualTo("value");
+		check(() -> verify(upstream).getProperty("key"));
+	}
+
+	@Test
+	void delegateExceptions_areNotWrapped() throws Exception {
+		BundleException exception = new BundleException("failed");
+		when(upstream.installBundle("location")).thenThrow(exception);
+		assertThatCode(() -> sut.installBundle("location")).isSameAs(exception);
+		when(upstream.getServiceReferences("clazz", "(")).thenThrow(new InvalidSyntaxException("bad", "("));
+		assertThatCode(() -> sut.getServiceReferences("clazz", "(")).isInstanceOf(InvalidSyntaxException.class);
+	}
+
 	@Nested
 	class CloseableServiceObjectsTest {
 		ServiceObjects<Object>	upstreamSO;
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.context;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.osgi.test.common.annotation.MutatesBundles;
+import org.osgi.test.common.annotation.MutatesServices;
+import org.osgi.test.common.context.FrameworkLocks.Locks;
+import org.osgi.test.common.context.FrameworkLocks.Mode;
+
+public class FrameworkLocksTest {
+
+	static class ReadOnly {
+		void test() {}
+	}
+
+	@MutatesBundles
+	static class BundleMutator {
+		void test() {}
+	}
+
+	static class ServiceMutator {
+		@MutatesServices(type = Runnable.class)
+		void runnable() {}
+
+		@MutatesServices(type = CharSequence.class)
+		void charSequence() {}
+
+		@MutatesServices
+		void all() {}
+	}
+
+	static class SubBundleMutator extends BundleMutator {
+		void test() {}
+	}
+
+	static Method method(Class<?> type, String name) throws Exception {
+		return type.getDeclaredMethod(name);
+	}
+
+	static CompletableFuture<Locks> lockAsync(Class<?> type, String name) throws Exception {
+		Method method = method(type, name);
+		return lockAsync(type, method, ForkJoinPool.commonPool());
+	}
+
+	static CompletableFuture<Locks> lockAsync(Class<?> type, Method method, Executor executor) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return FrameworkLocks.lock(type, method);
+			} catch (InterruptedException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	@Test
+	public void unannotatedTestsTakeNoLocks() throws Exception {
+		try (Locks locks = FrameworkLocks.lock(ReadOnly.class, method(ReadOnly.class, "test"))) {
+			assertThat(locks.isEmpty()).isTrue();
+		}
+	}
+
+	@Test
+	public void bundleMutatorsRunOneAtATime() throws Exception {
+		try (Locks locks = FrameworkLocks.lock(BundleMutator.class, method(BundleMutator.class, "test"))) {
+			assertThat(locks.isEmpty()).isFalse();
+			CompletableFuture<Locks> other = lockAsync(SubBundleMutator.class, "test");
+			try (Locks readOnly = FrameworkLocks.lock(ReadOnly.class, method(ReadOnly.class, "test"))) {
+				assertThat(readOnly.isEmpty()).isTrue();
+			}
+			Thread.sleep(100);
+			assertThat(other).isNotDone();
+			locks.close();
+			other.get(5, TimeUnit.SECONDS)
+				.close();
+		}
+	}
+
+	@Test
+	public void serviceMutatorsOfDifferentTypesRunConcurrently() throws Exception {
+		assertThat(FrameworkLocks.stripe(Runnable.class.getName()))
+			.isNotEqualTo(FrameworkLocks.stripe(CharSequence.class.getName()));
+		try (Locks locks = FrameworkLocks.lock(ServiceMutator.class, method(ServiceMutator.class, "runnable"))) {
+			lockAsync(ServiceMutator.class, "charSequence").get(5, TimeUnit.SECONDS)
+				.close();
+
+			CompletableFuture<Locks> same = lockAsync(ServiceMutator.class, "runnable");
+			CompletableFuture<Locks> all = lockAsync(ServiceMutator.class, "all");
+			Thread.sleep(100);
+			assertThat(same).isNotDone();
+			assertThat(all).isNotDone();
+			locks.close();
+			// either may acquire its locks first
+			CompletableFuture.allOf(same.thenAccept(Locks::close), all.thenAccept(Locks::close))
+				.get(5, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	public void explicitModesExcludeAnnotatedTests() throws Exception {
+		Method readOnly = method(ReadOnly.class, "test");
+		try (Locks reader = FrameworkLocks.lock(ReadOnly.class, readOnly, Mode.READ, Mode.READ)) {
+			assertThat(reader.isEmpty()).isFalse();
+			FrameworkLocks.lock(ReadOnly.class, readOnly, Mode.READ, Mode.READ)
+				.close();
+
+			CompletableFuture<Locks> bundleMutator = lockAsync(BundleMutator.class, "test");
+			CompletableFuture<Locks> serviceMutator = lockAsync(ServiceMutator.class, "runnable");
+			Thread.sleep(100);
+			assertThat(bundleMutator).isNotDone();
+			assertThat(serviceMutator).isNotDone();
+			reader.close();
+			bundleMutator.get(5, TimeUnit.SECONDS)
+				.close();
+			serviceMutator.get(5, TimeUnit.SECONDS)
+				.close();
+		}
+
+		try (Locks locks = FrameworkLocks.lock(BundleMutator.class, method(BundleMutator.class, "test"))) {
+			CompletableFuture<Locks> writer = CompletableFuture.supplyAsync(() -> {
+				try {
+					return FrameworkLocks.lock(ReadOnly.class, readOnly, Mode.WRITE, null);
+				} catch (InterruptedException e) {
+					throw new CompletionException(e);
+				}
+			});
+			Thread.sleep(100);
+			assertThat(writer).isNotDone();
+			locks.close();
+			writer.get(5, TimeUnit.SECONDS)
+				.close();
+		}
+	}
+
+	@Test
+	public void waitingDoesNotStarveForkJoinPool() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(1);
+		try (Locks locks = FrameworkLocks.lock(BundleMutator.class, method(BundleMutator.class, "test"))) {
+			CompletableFuture<Locks> waiting = lockAsync(BundleMutator.class, method(BundleMutator.class, "test"),
+				pool);
+			Thread.sleep(100);
+			assertThat(waiting).isNotDone();
+			// the pool compensates for its blocked worker
+			assertThat(CompletableFuture.supplyAsync(() -> "ran", pool)
+				.get(5, TimeUnit.SECONDS)).isEqualTo("ran");
+			locks.close();
+			waiting.get(5, TimeUnit.SECONDS)
+				.close();
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package org.osgi.test.common.context;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+public class ResourceJournalTest {
+
+	@Test
+	void snapshot_isIdentityDistinct_andInOrder() {
+		ResourceJournal<String> journal = new ResourceJournal<>();
+		String a = new String("a");
+		String otherA = new String("a");
+		journal.add(a);
+		journal.add(otherA);
+		journal.add(a);
+		assertThat(journal.snapshot()).hasSize(2)
+			.element(0)
+			.isSameAs(a);
+	}
+
+	@Test
+	void remove_tombstonesAllEntries() {
+		ResourceJournal<Object> journal = new ResourceJournal<>();
+		Object a = new Object();
+		Object b = new Object();
+		journal.add(a);
+		journal.add(b);
+		journal.add(a);
+		journal.remove(a);
+		assertThat(journal.snapshot()).containsExactly(b);
+		journal.remove(b);
+		assertThat(journal.isEmpty()).isTrue();
+	}
+
+	@Test
+	void repeatedAdds_doNotGrowTheJournal() {
+		ResourceJournal<Object> journal = new ResourceJournal<>();
+		Object a = new Object();
+		for (int i = 0; i < 1000; i++) {
+			journal.add(a);
+		}
+		assertThat(journal.snapshot()).containsExactly(a);
+		assertThat(journal.logSize()).isEqualTo(1);
+	}
+
+	@Test
+	void removedEntries_areUnlinked() {
+		ResourceJournal<Object> journal = new ResourceJournal<>();
+		Object a = new Object();
+		for (int i = 0; i < 1000; i++) {
+			Object o = new Object();
+			journal.add(a);
+			journal.add(o);
+			journal.remove(o);
+		}
+		assertThat(journal.snapshot()).containsExactly(a);
+		assertThat(journal.logSize()).isLessThanOrEqualTo(2);
+	}
+
+	@Test
+	void concurrentAdds_areAllRecorded() throws Exception {
+		ResourceJournal<Object> journal = new ResourceJournal<>();
+		int threads = 32;
+		int perThread = 1000;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					for (int i = 0; i < perThread; i++) {
+						Object o = new Object();
+						journal.add(o);
+						if ((i & 1) == 0) {
+							journal.remove(o);
+						}
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertThat(journal.snapshot()).hasSize(threads * perThread / 2);
+	}
+}
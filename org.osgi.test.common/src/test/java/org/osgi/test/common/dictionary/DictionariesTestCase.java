@@ -31,6 +31,7 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
@@ -590,6 +591,94 @@ public class DictionariesTestCase {
 			.containsExactly("value1", "value2", "value3", "value4");
 	}
 
+	@Test
+	public void dictionaryBuilder() {
+		DictionaryBuilder<String, Integer> builder = Dictionaries.dictionaryBuilder();
+		Map<String, Integer> expected = new LinkedHashMap<>();
+		for (int i = 0; i < 100; i++) {
+			builder.put("key" + i, i);
+			expected.put("key" + i, i);
+		}
+		Dictionary<String, Integer> dict = builder.build();
+		assertThat(dict).isInstanceOf(Map.class);
+		assertThat(dict.size()).isEqualTo(100);
+		for (int i = 0; i < 100; i++) {
+			assertThat(dict.get("key" + i)).isEqualTo(i);
+		}
+		assertThat(dict.get("key100")).isNull();
+		assertThat(Collections.list(dict.keys())).containsExactlyElementsOf(expected.keySet());
+		assertThat(Collections.list(dict.elements())).containsExactlyElementsOf(expected.values());
+
+		Map<String, Integer> map = Dictionaries.asMap(dict);
+		assertThat(map).isEqualTo(expected)
+			.hasSameHashCodeAs(expected);
+		assertThat(expected).isEqualTo(map);
+		assertThat(map.entrySet()).containsExactlyElementsOf(expected.entrySet());
+		assertThat(map.containsValue(42)).isTrue();
+		assertThat(map.containsKey(null)).isFalse();
+	}
+
+	@Test
+	public void dictionaryBuilder_exceptions() {
+		DictionaryBuilder<String, String> builder = Dictionaries.dictionaryBuilder();
+		assertThatNullPointerException().isThrownBy(() -> builder.put(null, "value"));
+		assertThatNullPointerException().isThrownBy(() -> builder.put("key", null));
+
+		for (int i = 0; i < 20; i++) {
+			builder.put("key" + i, "value" + i);
+		}
+		Dictionary<String, String> dict = builder.build();
+		assertThatExceptionOfType(UnsupportedOperationException.class).isThrownBy(() -> dict.put("key", "value"));
+		assertThatExceptionOfType(UnsupportedOperationException.class).isThrownBy(() -> dict.remove("key1"));
+		assertThatExceptionOfType(UnsupportedOperationException.class)
+			.isThrownBy(() -> Dictionaries.asMap(dict)
+				.clear());
+
+		// the builder can be reused and detects duplicates of any size
+		builder.put("key1", "other");
+		assertThatIllegalArgumentException().isThrownBy(builder::build);
+		assertThat(dict.get("key1")).isEqualTo("value1");
+		assertThatIllegalArgumentException().isThrownBy(() -> Dictionaries.dictionaryBuilder()
+			.put("key1", "value1")
+			.put("key1", "value2")
+			.build());
+	}
+
+	@Test
+	public void caseInsensitive() {
+		Map<String, Object> properties = new LinkedHashMap<>();
+		properties.put("Service.Ranking", 10);
+		properties.put("foo", "bar");
+		for (int i = 0; i < 20; i++) {
+			Dictionary<String, Object> dict = Dictionaries.caseInsensitive(properties);
+			assertThat(dict.size()).isEqualTo(properties.size());
+			assertThat(dict.get("service.ranking")).isEqualTo(10);
+			assertThat(dict.get("SERVICE.RANKING")).isEqualTo(10);
+			assertThat(dict.get("FOO")).isEqualTo("bar");
+			assertThat(dict.get("fo")).isNull();
+			assertThat(Collections.list(dict.keys())).containsExactlyElementsOf(properties.keySet());
+			assertThat(Dictionaries.caseInsensitive(Dictionaries.asMap(dict))).isSameAs(dict);
+			// exercise the hash table as well as the linear search
+			properties.put("key" + i, i);
+		}
+
+		assertThatIllegalArgumentException().isThrownBy(() -> {
+			Map<String, Object> duplicates = new LinkedHashMap<>(properties);
+			duplicates.put("KEY3", 3);
+			Dictionaries.caseInsensitive(duplicates);
+		});
+		assertThatIllegalArgumentException().isThrownBy(() -> {
+			Map<String, Object> duplicates = new LinkedHashMap<>();
+			duplicates.put("key", 1);
+			duplicates.put("Key", 2);
+			Dictionaries.caseInsensitive(duplicates);
+		});
+		assertThatExceptionOfType(UnsupportedOperationException.class).isThrownBy(() -> {
+			Dictionaries.caseInsensitive(properties)
+				.put("foo", "baz");
+		});
+	}
+
 	public static class TestDictionary<K, V> extends Dictionary<K, V> {
 		private final Map<K, V> map;
 
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.osgi.framework.Filter;
+import org.osgi.framework.InvalidSyntaxException;
+
+public class FiltersTest {
+
+	@BeforeEach
+	public void beforeEach() {
+		Filters.clearCache();
+	}
+
+	@Test
+	public void formatIsCached() {
+		Filter first = Filters.format("(%s=%s)", "key", "value");
+		assertThat(Filters.getCacheMisses()).isEqualTo(1L);
+		assertThat(Filters.getCacheHits()).isEqualTo(0L);
+
+		Filter second = Filters.format("(%s=%s)", "key", "value");
+		assertThat(second).isSameAs(first);
+		assertThat(Filters.getCacheMisses()).isEqualTo(1L);
+		assertThat(Filters.getCacheHits()).isEqualTo(1L);
+
+		assertThat(Filters.format("(%s=%s)", "key", "other")).isNotSameAs(first);
+		assertThat(Filters.getCacheMisses()).isEqualTo(2L);
+	}
+
+	@Test
+	public void cacheIsBounded() {
+		Filter first = Filters.filter("(key=0)");
+		for (int i = 1; i <= Filters.CACHE_SIZE; i++) {
+			Filters.filter("(key=" + i + ")");
+		}
+		assertThat(Filters.filter("(key=0)")).isNotSameAs(first)
+			.isEqualTo(first);
+		assertThat(Filters.getCacheHits()).isEqualTo(0L);
+	}
+
+	@Test
+	public void objectClass() {
+		assertThat(Filters.objectClass(String.class, "")).hasToString("(objectClass=java.lang.String)");
+		assertThat(Filters.objectClass(String.class, "(key=value)"))
+			.hasToString("(&(objectClass=java.lang.String)(key=value))");
+	}
+
+	@Test
+	public void malformedFilterIsNotCached() {
+		assertThatExceptionOfType(InvalidSyntaxException.class).isThrownBy(() -> Filters.filter("(key=value"));
+		assertThatExceptionOfType(InvalidSyntaxException.class).isThrownBy(() -> Filters.filter("(key=value"));
+		assertThat(Filters.getCacheMisses()).isEqualTo(2L);
+	}
+
+}
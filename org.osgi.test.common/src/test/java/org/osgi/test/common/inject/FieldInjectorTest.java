@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.inject;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Field;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class FieldInjectorTest {
+
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target({
+		ElementType.FIELD, ElementType.ANNOTATION_TYPE
+	})
+	@interface Inject {
+		String value() default "";
+	}
+
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.FIELD)
+	@Inject("meta")
+	@interface MetaInject {}
+
+	static class Base {
+		@Inject("base")
+		String			base;
+		@Inject("static")
+		static String	staticField;
+	}
+
+	static class Sub extends Base {
+		@MetaInject
+		String		meta;
+		String		notAnnotated;
+		private int	primitive;
+	}
+
+	@Test
+	public void findsAnnotatedFieldsInHierarchy() throws Exception {
+		assertThat(FieldInjector.findAnnotatedNonStaticFields(Sub.class, Inject.class))
+			.containsExactly(Base.class.getDeclaredField("base"), Sub.class.getDeclaredField("meta"));
+		assertThat(FieldInjector.findAnnotatedStaticFields(Sub.class, Inject.class))
+			.containsExactly(Base.class.getDeclaredField("staticField"));
+		assertThat(FieldInjector.findAnnotatedFields(Sub.class, Inject.class, f -> true)).hasSize(3);
+	}
+
+	@Test
+	public void resolvesMetaAnnotations() throws Exception {
+		List<AnnotatedField<Inject>> fields = FieldInjector.findAnnotatedNonStaticFieldsWithAnnotation(Sub.class,
+			Inject.class);
+		assertThat(fields).extracting(f -> f.getAnnotation()
+			.value())
+			.containsExactly("base", "meta");
+	}
+
+	@Test
+	public void resultsAreCached() throws Exception {
+		List<Field> first = FieldInjector.findAnnotatedNonStaticFields(Sub.class, Inject.class);
+		assertThat(FieldInjector.findAnnotatedNonStaticFields(Sub.class, Inject.class)).isSameAs(first);
+		assertThat(FieldInjector.findAnnotatedNonStaticFields(Sub.class, MetaInject.class))
+			.containsExactly(Sub.class.getDeclaredField("meta"));
+	}
+
+	@Test
+	public void setsFields() throws Exception {
+		Sub sub = new Sub();
+		FieldInjector.setField(Sub.class.getDeclaredField("meta"), sub, "value");
+		assertThat(sub.meta).isEqualTo("value");
+		FieldInjector.setField(Sub.class.getDeclaredField("meta"), sub, "again");
+		assertThat(sub.meta).isEqualTo("again");
+
+		FieldInjector.setField(Sub.class.getDeclaredField("primitive"), sub, 42);
+		assertThat(sub.primitive).isEqualTo(42);
+
+		FieldInjector.setField(Base.class.getDeclaredField("staticField"), null, "static");
+		assertThat(Base.staticField).isEqualTo("static");
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.install;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.osgi.framework.Constants;
+
+public class BundleBuilderTest {
+
+	@Test
+	public void writesManifestHeaders() throws Exception {
+		BundleBuilder builder = new BundleBuilder("test.exporter").version("1.2.3")
+			.exportPackage("com.acme.api;version=1.0")
+			.exportPackage("com.acme.spi")
+			.header("Foo", "bar");
+
+		try (JarInputStream jar = new JarInputStream(builder.openStream())) {
+			Attributes main = jar.getManifest()
+				.getMainAttributes();
+			assertThat(main.getValue(Constants.BUNDLE_MANIFESTVERSION)).isEqualTo("2");
+			assertThat(main.getValue(Constants.BUNDLE_SYMBOLICNAME)).isEqualTo("test.exporter");
+			assertThat(main.getValue(Constants.BUNDLE_VERSION)).isEqualTo("1.2.3");
+			assertThat(main.getValue(Constants.EXPORT_PACKAGE)).isEqualTo("com.acme.api;version=1.0,com.acme.spi");
+			assertThat(main.getValue("Foo")).isEqualTo("bar");
+		}
+		assertThat(builder.getLocation()).isEqualTo(BundleBuilder.LOCATION_PREFIX + "test.exporter/1.2.3");
+		assertThat(builder.location("custom")
+			.getLocation()).isEqualTo("custom");
+	}
+
+	@Test
+	public void writesEntriesAndDirectories() throws Exception {
+		BundleBuilder builder = new BundleBuilder("test.entries").entry("OSGI-INF/a/component.xml", "<component/>")
+			.addClass(BundleBuilderTest.class);
+
+		List<String> names = new ArrayList<>();
+		String component = null;
+		byte[] clazz = null;
+		try (JarInputStream jar = new JarInputStream(builder.openStream())) {
+			for (JarEntry entry; (entry = jar.getNextJarEntry()) != null;) {
+				names.add(entry.getName());
+				if (entry.getName()
+					.equals("OSGI-INF/a/component.xml")) {
+					component = new String(read(jar), UTF_8);
+				} else if (entry.getName()
+					.endsWith("BundleBuilderTest.class")) {
+					clazz = read(jar);
+				}
+			}
+		}
+		assertThat(names).containsExactly("OSGI-INF/", "OSGI-INF/a/", "OSGI-INF/a/component.xml", "org/", "org/osgi/",
+			"org/osgi/test/", "org/osgi/test/common/", "org/osgi/test/common/install/",
+			"org/osgi/test/common/install/BundleBuilderTest.class");
+		assertThat(component).isEqualTo("<component/>");
+		assertThat(clazz).startsWith((byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE);
+	}
+
+	// reads the current entry without closing the stream
+	private static byte[] read(InputStream is) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		for (int n; (n = is.read(buffer)) > 0;) {
+			out.write(buffer, 0, n);
+		}
+		return out.toByteArray();
+	}
+}
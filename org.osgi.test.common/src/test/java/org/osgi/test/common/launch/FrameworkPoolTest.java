@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.launch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.launch.Framework;
+import org.osgi.framework.launch.FrameworkFactory;
+import org.osgi.test.common.launch.FrameworkPool.PooledFramework;
+
+public class FrameworkPoolTest {
+	FrameworkFactory	factory;
+	Framework			framework;
+	BundleContext		bundleContext;
+	Bundle				base;
+
+	@BeforeEach
+	void beforeEach() throws Exception {
+		factory = mock(FrameworkFactory.class);
+		framework = mock(Framework.class);
+		bundleContext = mock(BundleContext.class);
+		base = mock(Bundle.class);
+		when(factory.newFramework(anyMap())).thenReturn(framework);
+		when(framework.getState()).thenReturn(Bundle.ACTIVE);
+		when(framework.getBundleContext()).thenReturn(bundleContext);
+		when(framework.getBundleId()).thenReturn(0L);
+		when(base.getBundleId()).thenReturn(1L);
+		when(base.getState()).thenReturn(Bundle.ACTIVE);
+		when(bundleContext.installBundle("base")).thenReturn(base);
+		when(bundleContext.getBundles()).thenReturn(new Bundle[] {
+			framework, base
+		});
+		when(bundleContext.getBundle(0L)).thenReturn(framework);
+		when(bundleContext.getBundle(1L)).thenReturn(base);
+	}
+
+	FrameworkPool pool(int maxIdle) {
+		List<String> baseBundles = Collections.singletonList("base");
+		return new FrameworkPool(factory, Collections.emptyMap(), baseBundles, maxIdle);
+	}
+
+	@Test
+	void launchesFrameworkWithBaseBundles() throws Exception {
+		try (FrameworkPool pool = pool(1); PooledFramework pooled = pool.acquire()) {
+			assertThat(pooled.getFramework()).isSameAs(framework);
+			verify(framework).start();
+			verify(base).start();
+		}
+	}
+
+	@Test
+	void releasedFrameworkIsReused() throws Exception {
+		try (FrameworkPool pool = pool(1)) {
+			pool.acquire()
+				.close();
+			assertThat(pool.getIdleCount()).isEqualTo(1);
+
+			try (PooledFramework pooled = pool.acquire()) {
+				assertThat(pooled.getFramework()).isSameAs(framework);
+				assertThat(pool.getIdleCount()).isZero();
+			}
+			verify(factory, times(1)).newFramework(anyMap());
+			verify(framework, never()).stop();
+		}
+		verify(framework).stop();
+	}
+
+	@Test
+	void releaseUninstallsBundlesInstalledDuringTheLease() throws Exception {
+		try (FrameworkPool pool = pool(1)) {
+			PooledFramework pooled = pool.acquire();
+			Bundle extra = mock(Bundle.class);
+			when(extra.getBundleId()).thenReturn(2L);
+			when(bundleContext.getBundles()).thenReturn(new Bundle[] {
+				framework, base, extra
+			});
+			when(base.getState()).thenReturn(Bundle.RESOLVED);
+
+			pooled.close();
+
+			verify(extra).uninstall();
+			verify(base, times(2)).start();
+			assertThat(pool.getIdleCount()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	void releaseLeavesLazilyActivatedBaseBundlesStarted() throws Exception {
+		when(base.getState()).thenReturn(Bundle.STARTING);
+		try (FrameworkPool pool = pool(1)) {
+			PooledFramework pooled = pool.acquire();
+			when(base.getState()).thenReturn(Bundle.ACTIVE);
+
+			pooled.close();
+
+			verify(base, never()).stop();
+			assertThat(pool.getIdleCount()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	void releaseRestartsLazilyActivatedBaseBundlesLazily() throws Exception {
+		when(base.getState()).thenReturn(Bundle.STARTING);
+		try (FrameworkPool pool = pool(1)) {
+			PooledFramework pooled = pool.acquire();
+			when(base.getState()).thenReturn(Bundle.RESOLVED);
+
+			pooled.close();
+
+			verify(base).start(Bundle.START_ACTIVATION_POLICY);
+			assertThat(pool.getIdleCount()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	void failedResetIsReportedAndStopsFramework() throws Exception {
+		try (FrameworkPool pool = pool(1)) {
+			PooledFramework pooled = pool.acquire();
+			BundleException failure = new BundleException("failed");
+			when(base.getState()).thenReturn(Bundle.RESOLVED);
+			doThrow(failure).when(base)
+				.start();
+
+			assertThatThrownBy(pooled::close).isSameAs(failure);
+
+			verify(framework).stop();
+			assertThat(pool.getIdleCount()).isZero();
+		}
+	}
+
+	@Test
+	void frameworkIsStoppedWhenBaseBundleIsMissing() throws Exception {
+		try (FrameworkPool pool = pool(1)) {
+			PooledFramework pooled = pool.acquire();
+			when(bundleContext.getBundle(1L)).thenReturn(null);
+
+			pooled.close();
+
+			verify(framework).stop();
+			assertThat(pool.getIdleCount()).isZero();
+		}
+	}
+
+	@Test
+	void frameworkIsStoppedWhenPoolIsFull() throws Exception {
+		try (FrameworkPool pool = pool(0)) {
+			pool.acquire()
+				.close();
+
+			verify(framework).stop();
+			assertThat(pool.getIdleCount()).isZero();
+		}
+	}
+
+	@Test
+	void closedPoolCannotBeAcquiredFrom() throws Exception {
+		FrameworkPool pool = pool(1);
+		pool.prestart(1);
+		assertThat(pool.getIdleCount()).isEqualTo(1);
+
+		pool.close();
+
+		verify(framework).stop();
+		assertThat(pool.getIdleCount()).isZero();
+		assertThatIllegalStateException().isThrownBy(pool::acquire);
+	}
+}
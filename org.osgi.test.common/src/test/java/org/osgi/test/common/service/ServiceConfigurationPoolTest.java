@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.common.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceListener;
+import org.osgi.test.common.annotation.InjectService;
+
+public class ServiceConfigurationPoolTest {
+
+	interface Foo {}
+
+	@InjectService(cardinality = 0)
+	Foo								foo;
+
+	@InjectService(cardinality = 0, filter = "(foo=bar)")
+	Foo								filteredFoo;
+
+	BundleContext					bundleContext;
+	ServiceConfigurationPool		pool;
+
+	@BeforeEach
+	void beforeEach() throws Exception {
+		bundleContext = mock(BundleContext.class);
+		Bundle bundle = mock(Bundle.class);
+		when(bundleContext.getBundle()).thenReturn(bundle);
+		when(bundle.getBundleContext()).thenReturn(bundleContext);
+		pool = new ServiceConfigurationPool();
+	}
+
+	InjectService injectService(String fieldName) throws Exception {
+		return getClass().getDeclaredField(fieldName)
+			.getAnnotation(InjectService.class);
+	}
+
+	@Test
+	void acquire_sameKey_sharesTracker() throws Exception {
+		ServiceConfigurationPool.PooledServiceAware<Foo> first = pool.acquire(Foo.class, injectService("foo"),
+			bundleContext);
+		ServiceConfigurationPool.PooledServiceAware<Foo> second = pool.acquire(Foo.class, injectService("foo"),
+			bundleContext);
+
+		assertThat(first).isNotSameAs(second);
+		assertThat(pool.size()).isEqualTo(1);
+		verify(bundleContext, times(1)).addServiceListener(any(ServiceListener.class), anyString());
+
+		first.close();
+		assertThat(pool.size()).isEqualTo(1);
+		verify(bundleContext, times(0)).removeServiceListener(any(ServiceListener.class));
+
+		second.close();
+		assertThat(pool.size()).isZero();
+		verify(bundleContext, times(1)).removeServiceListener(any(ServiceListener.class));
+	}
+
+	@Test
+	void acquire_differentKey_usesSeparateTrackers() throws Exception {
+		try (ServiceConfigurationPool.PooledServiceAware<Foo> first = pool.acquire(Foo.class, injectService("foo"),
+			bundleContext);
+			ServiceConfigurationPool.PooledServiceAware<Foo> second = pool.acquire(Foo.class,
+				injectService("filteredFoo"), bundleContext)) {
+			assertThat(pool.size()).isEqualTo(2);
+			assertThat(second.getFilter()
+				.toString()).contains("(foo=bar)");
+		}
+		assertThat(pool.size()).isZero();
+	}
+
+	@Test
+	void close_isIdempotent() throws Exception {
+		ServiceConfigurationPool.PooledServiceAware<Foo> first = pool.acquire(Foo.class, injectService("foo"),
+			bundleContext);
+		ServiceConfigurationPool.PooledServiceAware<Foo> second = pool.acquire(Foo.class, injectService("foo"),
+			bundleContext);
+
+		first.close();
+		first.close();
+		assertThat(pool.size()).isEqualTo(1);
+		second.close();
+		assertThat(pool.size()).isZero();
+	}
+
+	@Test
+	void awaitAll_reportsEveryFailure() {
+		List<String> names = Arrays.asList("a", "b", "c");
+		assertThatExceptionOfType(AssertionError.class).isThrownBy(() -> ServiceConfigurationPool.awaitAll(names, name -> {
+			if (!name.equals("b")) {
+				throw new AssertionError(name + " didn't arrive");
+			}
+		}))
+			.withMessage("2 injection points failed:\na didn't arrive\nc didn't arrive")
+			.satisfies(e -> assertThat(e.getSuppressed()).hasSize(2));
+	}
+
+	@Test
+	void awaitAll_rethrowsSingleFailure() {
+		AssertionError failure = new AssertionError("a didn't arrive");
+		assertThatExceptionOfType(AssertionError.class).isThrownBy(() -> ServiceConfigurationPool
+			.awaitAll(Arrays.asList("a", "b"), name -> {
+				if (name.equals("a")) {
+					throw failure;
+				}
+			}))
+			.isSameAs(failure);
+	}
+
+	@Test
+	void open_twice_throws() throws Exception {
+		ServiceConfiguration<Foo> configuration = new ServiceConfiguration<>(Foo.class, "", new String[0], 0, 0);
+		try {
+			configuration.open(bundleContext);
+			assertThatIllegalStateException().isThrownBy(() -> configuration.open(bundleContext));
+			verify(bundleContext, times(1)).addServiceListener(any(ServiceListener.class), anyString());
+		} finally {
+			configuration.close();
+		}
+	}
+}
@@ -1,12 +1,15 @@
 package org.osgi.test.common.stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.osgi.test.common.stream.MapStream.entry;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -24,6 +27,7 @@ import java.util.stream.StreamSupport;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.osgi.framework.Bundle;
 
 public class MapStreamTest {
 
@@ -1485,4 +1489,160 @@ public class MapStreamTest {
 				entry("key1", "value1"));
 	}
 
+	@Test
+	public void fusedFilterKeepsEntries() {
+		Supplier<MapStream<String, String>> supplier = () -> MapStream.of(testMap)
+			.filterKey(k -> !k.equals("key1"))
+			.peekValue(v -> {})
+			.filterValue(v -> !v.equals("value5"));
+		assertThat(supplier.get()
+			.entries()).allMatch(e -> testMap.entrySet()
+				.stream()
+				.anyMatch(t -> t == e))
+			.hasSize(3);
+		assertThat(supplier.get()
+			.count()).isEqualTo(3);
+		assertThat(supplier.get()
+			.keys()).containsExactlyInAnyOrder("key2", "key3", "key4");
+	}
+
+	@Test
+	public void fusedMapping() {
+		List<String> peeked = new ArrayList<>();
+		Supplier<MapStream<String, Integer>> supplier = () -> MapStream.of(testMap)
+			.mapValue(v -> v.substring(5))
+			.filterValue(v -> !v.equals("3"))
+			.mapKey(String::toUpperCase)
+			.peekKey(peeked::add)
+			.mapValue(Integer::valueOf)
+			.filter((k, v) -> v > 1)
+			.map((k, v) -> entry(k.toLowerCase(), v * 10));
+		assertThat(supplier.get()
+			.entries()).containsExactlyInAnyOrder(entry("key2", 20), entry("key4", 40), entry("key5", 50));
+		assertThat(peeked).containsExactlyInAnyOrder("KEY1", "KEY2", "KEY4", "KEY5");
+		assertThat(supplier.get()
+			.keys()).containsExactlyInAnyOrder("key2", "key4", "key5");
+		assertThat(supplier.get()
+			.values()).containsExactlyInAnyOrder(20, 40, 50);
+		assertThat(supplier.get()
+			.mapToInt((k, v) -> v)
+			.sum()).isEqualTo(110);
+		assertThat(supplier.get()
+			.mapToObj((k, v) -> k + "=" + v)).containsExactlyInAnyOrder("key2=20", "key4=40", "key5=50");
+		assertThat(supplier.get()
+			.sortedByValue(Comparator.reverseOrder())
+			.keys()).containsExactly("key5", "key4", "key2");
+		assertThat(supplier.get()
+			.collect(MapStream.toMap())).containsOnly(entry("key2", 20), entry("key4", 40), entry("key5", 50));
+	}
+
+	@Test
+	public void fusedParallel() {
+		Map<Integer, Integer> map = new HashMap<>();
+		for (int i = 0; i < 10_000; i++) {
+			map.put(i, i);
+		}
+		Supplier<MapStream<Integer, Integer>> supplier = () -> MapStream.of(map)
+			.parallel()
+			.filterKey(k -> k % 2 == 0)
+			.mapValue(v -> v * 2)
+			.mapKey(k -> k + 1);
+		assertThat(supplier.get()
+			.isParallel()).isTrue();
+		assertThat(supplier.get()
+			.count()).isEqualTo(5_000);
+		assertThat(supplier.get()
+			.allMatch((k, v) -> v == 2 * (k - 1))).isTrue();
+		assertThat(supplier.get()
+			.collect(MapStream.toMap())).hasSize(5_000)
+				.containsEntry(1, 0)
+				.containsEntry(9_999, 19_996);
+		assertThat(supplier.get()
+			.sequential()
+			.isParallel()).isFalse();
+	}
+
+
+	@Test
+	public void parallelForEachOrdered() {
+		Map<Integer, Integer> map = new HashMap<>();
+		for (int i = 0; i < 100_000; i++) {
+			map.put(i, -i);
+		}
+		List<Integer> expected = new ArrayList<>(map.keySet());
+
+		List<Integer> keys = new ArrayList<>();
+		MapStream.of(map)
+			.parallel()
+			.forEachOrdered((k, v) -> {
+				assertThat(v).isEqualTo(-k);
+				keys.add(k);
+			});
+		assertThat(keys).isEqualTo(expected);
+
+		keys.clear();
+		MapStream.of(map)
+			.parallel()
+			.filterKey(k -> true)
+			.mapValue(v -> -v)
+			.forEachOrdered((k, v) -> {
+				assertThat(v).isEqualTo(k);
+				keys.add(k);
+			});
+		assertThat(keys).isEqualTo(expected);
+	}
+	@Test
+	public void ofDictionary() {
+		Hashtable<String, String> dictionary = new Hashtable<>(testMap);
+		Supplier<MapStream<String, String>> supplier = () -> MapStream.ofDictionary(dictionary);
+		assertThat(supplier.get()
+			.count()).isEqualTo(testMap.size());
+		assertThat(supplier.get()
+			.spliterator()
+			.getExactSizeIfKnown()).isEqualTo(testMap.size());
+		assertThat(supplier.get()
+			.keys()).containsExactlyInAnyOrder("key1", "key2", "key3", "key4", "key5");
+		assertThat(supplier.get()
+			.entries()).containsExactlyInAnyOrder(testEntries);
+		assertThat(supplier.get()
+			.collect(MapStream.toMap())).containsExactlyInAnyOrderEntriesOf(testMap);
+		assertThat(MapStream.ofDictionary(new Hashtable<>())
+			.count()).isZero();
+	}
+
+	@Test
+	public void ofDictionaryParallel() {
+		Hashtable<Integer, Integer> dictionary = new Hashtable<>();
+		for (int i = 0; i < 10_000; i++) {
+			dictionary.put(i, i);
+		}
+		Spliterator<Entry<Integer, Integer>> spliterator = MapStream.ofDictionary(dictionary)
+			.spliterator();
+		Spliterator<Entry<Integer, Integer>> prefix = spliterator.trySplit();
+		assertThat(prefix).isNotNull();
+		assertThat(prefix.getExactSizeIfKnown()).isEqualTo(5_000);
+		assertThat(spliterator.getExactSizeIfKnown()).isEqualTo(5_000);
+
+		Supplier<MapStream<Integer, Integer>> supplier = () -> MapStream.ofDictionary(dictionary)
+			.parallel();
+		assertThat(supplier.get()
+			.isParallel()).isTrue();
+		assertThat(supplier.get()
+			.mapToLong((k, v) -> v)
+			.sum()).isEqualTo(49_995_000L);
+		assertThat(supplier.get()
+			.collect(MapStream.toMap())).isEqualTo(dictionary);
+	}
+
+	@Test
+	public void ofHeaders() {
+		Hashtable<String, String> headers = new Hashtable<>();
+		headers.put("Bundle-SymbolicName", "test.bundle");
+		headers.put("Bundle-Version", "1.0.0");
+		Bundle bundle = mock(Bundle.class);
+		when(bundle.getHeaders()).thenReturn(headers);
+		assertThat(MapStream.ofHeaders(bundle)
+			.collect(MapStream.toMap())).isEqualTo(headers);
+	}
+
 }
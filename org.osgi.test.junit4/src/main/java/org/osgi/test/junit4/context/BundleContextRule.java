@@ -30,7 +30,11 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.FrameworkUtil;
 import org.osgi.test.common.annotation.InjectBundleContext;
 import org.osgi.test.common.annotation.InjectInstallBundle;
+import org.osgi.test.common.annotation.MutatesBundles;
+import org.osgi.test.common.annotation.MutatesServices;
 import org.osgi.test.common.context.CloseableBundleContext;
+import org.osgi.test.common.context.FrameworkLocks;
+import org.osgi.test.common.context.FrameworkLocks.Locks;
 import org.osgi.test.common.install.InstallBundle;
 
 /**
@@ -54,6 +58,11 @@ import org.osgi.test.common.install.InstallBundle;
  * 	Bundle bundle = bundleContext.getBundle();
  * }
  * </pre>
+ * <p>
+ * The locks declared with {@link MutatesBundles @MutatesBundles} and
+ * {@link MutatesServices @MutatesServices} are held while the test runs and
+ * until its bundle context has been cleaned up, so that tests run in parallel
+ * which change the same framework state run one at a time.
  */
 public class BundleContextRule implements AutoCloseable, MethodRule {
 
@@ -109,10 +118,12 @@ public class BundleContextRule implements AutoCloseable, MethodRule {
 		return new Statement() {
 			@Override
 			public void evaluate() throws Throwable {
-				try {
-					statement.evaluate();
-				} finally {
-					close();
+				try (Locks locks = FrameworkLocks.lock(testInstance.getClass(), method.getMethod())) {
+					try {
+						statement.evaluate();
+					} finally {
+						close();
+					}
 				}
 			}
 		};
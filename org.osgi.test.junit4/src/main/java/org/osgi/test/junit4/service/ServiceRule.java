@@ -16,13 +16,14 @@
 
 package org.osgi.test.junit4.service;
 
-import static org.osgi.test.common.inject.FieldInjector.findAnnotatedNonStaticFields;
+import static org.osgi.test.common.inject.FieldInjector.findAnnotatedNonStaticFieldsWithAnnotation;
 import static org.osgi.test.common.inject.FieldInjector.setField;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -35,9 +36,12 @@ import org.junit.runners.model.Statement;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.FrameworkUtil;
 import org.osgi.test.common.annotation.InjectService;
+import org.osgi.test.common.annotation.InjectService.Scope;
+import org.osgi.test.common.inject.AnnotatedField;
 import org.osgi.test.common.service.ServiceAware;
-import org.osgi.test.common.service.ServiceConfiguration;
 import org.osgi.test.common.service.ServiceConfigurationKey;
+import org.osgi.test.common.service.ServiceConfigurationPool;
+import org.osgi.test.common.service.ServiceConfigurationPool.PooledServiceAware;
 
 /**
  * A JUnit 4 Rule to depend on OSGi services.
@@ -59,34 +63,60 @@ import org.osgi.test.common.service.ServiceConfigurationKey;
  */
 public class ServiceRule implements AutoCloseable, MethodRule {
 
-	private final Map<ServiceConfigurationKey, ServiceConfiguration<?>> configurations = new ConcurrentHashMap<>();
+	private final Map<ServiceConfigurationKey, PooledServiceAware<?>> configurations = new ConcurrentHashMap<>();
 
 	public ServiceRule init(Object testInstance) {
 		BundleContext bundleContext = FrameworkUtil.getBundle(testInstance
 			.getClass())
 			.getBundleContext();
-		List<Field> fields = findAnnotatedNonStaticFields(testInstance.getClass(), InjectService.class);
-
-		fields.forEach(field -> {
-			assertValidFieldCandidate(field);
-
-			InjectService injectService = field.getAnnotation(InjectService.class);
-			Class<?> memberType = field.getType();
-			Type genericMemberType = field.getGenericType();
-
-			setField(field, testInstance, resolveReturnValue(memberType, genericMemberType, injectService,
-				bundleContext, configurations));
-		});
+		List<AnnotatedField<InjectService>> fields = findAnnotatedNonStaticFieldsWithAnnotation(
+			testInstance.getClass(), InjectService.class);
+
+		try {
+			// Open the trackers for all fields before waiting on any of them so
+			// that the wait is bounded by the longest timeout rather than the
+			// sum of all timeouts.
+			List<PooledServiceAware<?>> serviceAwares = new ArrayList<>(fields.size());
+			for (AnnotatedField<InjectService> annotatedField : fields) {
+				Field field = annotatedField.getField();
+				assertValidFieldCandidate(field);
+
+				InjectService injectService = annotatedField.getAnnotation();
+				assertValidScope(field, injectService);
+				Class<?> serviceType = getServiceType(field.getType(), field.getGenericType());
+				serviceAwares.add(configurations.computeIfAbsent(
+					new ServiceConfigurationKey(serviceType, injectService), k -> ServiceConfigurationPool.getDefault()
+						.open(serviceType, injectService, bundleContext)));
+			}
+			ServiceConfigurationPool.awaitAll(serviceAwares, PooledServiceAware::await);
+
+			fields.forEach(annotatedField -> {
+				Field field = annotatedField.getField();
+				InjectService injectService = annotatedField.getAnnotation();
+				Class<?> memberType = field.getType();
+				Type genericMemberType = field.getGenericType();
+
+				setField(field, testInstance, resolveReturnValue(memberType, genericMemberType, injectService,
+					bundleContext, configurations));
+			});
+		} catch (Throwable t) {
+			try {
+				close();
+			} catch (Exception e) {
+				t.addSuppressed(e);
+			}
+			throw t;
+		}
 
 		return this;
 	}
 
 	@Override
 	public void close() throws Exception {
-		for (Iterator<Entry<ServiceConfigurationKey, ServiceConfiguration<?>>> itr = configurations
+		for (Iterator<Entry<ServiceConfigurationKey, PooledServiceAware<?>>> itr = configurations
 			.entrySet()
 			.iterator(); itr.hasNext();) {
-			Entry<ServiceConfigurationKey, ServiceConfiguration<?>> entry = itr.next();
+			Entry<ServiceConfigurationKey, PooledServiceAware<?>> entry = itr.next();
 			entry.getValue()
 				.close();
 			itr.remove();
@@ -116,22 +146,32 @@ public class ServiceRule implements AutoCloseable, MethodRule {
 		}
 	}
 
-	static <X> ServiceConfiguration<X> getServiceUseConfiguration(
+	/**
+	 * A rule cannot observe the end of a test class or test run, so only
+	 * {@link Scope#METHOD} is supported.
+	 */
+	static void assertValidScope(Field field, InjectService injectService) {
+		if (injectService.scope() != Scope.METHOD) {
+			throw new RuntimeException(InjectService.class.getName() + " field [" + field + "] scope "
+				+ injectService.scope() + " is not supported by " + ServiceRule.class.getSimpleName()
+				+ "; only " + Scope.METHOD + " is supported.");
+		}
+	}
+
+	static <X> ServiceAware<X> getServiceUseConfiguration(
 		InjectService injectService,
 		Class<X> serviceType,
 		BundleContext bundleContext,
-		Map<ServiceConfigurationKey, ServiceConfiguration<?>> configurations) {
+		Map<ServiceConfigurationKey, PooledServiceAware<?>> configurations) {
 		@SuppressWarnings("unchecked")
-		ServiceConfiguration<X> closeableTrackServices = (ServiceConfiguration<X>) configurations.computeIfAbsent(
+		ServiceAware<X> closeableTrackServices = (ServiceAware<X>) configurations.computeIfAbsent(
 			new ServiceConfigurationKey(serviceType, injectService),
-			k -> new ServiceConfiguration<>(serviceType, injectService.filter(), injectService.filterArguments(),
-				injectService.cardinality(), injectService.timeout()).init(bundleContext));
+			k -> ServiceConfigurationPool.getDefault()
+				.acquire(serviceType, injectService, bundleContext));
 		return closeableTrackServices;
 	}
 
-	static Object resolveReturnValue(Class<?> memberType, Type genericMemberType, InjectService serviceUseParameter,
-		BundleContext bundleContext, Map<ServiceConfigurationKey, ServiceConfiguration<?>> configurations) {
-
+	static Class<?> getServiceType(Class<?> memberType, Type genericMemberType) {
 		Type serviceType = genericMemberType;
 
 		if (List.class.equals(memberType) && (genericMemberType instanceof ParameterizedType)) {
@@ -146,8 +186,14 @@ public class ServiceRule implements AutoCloseable, MethodRule {
 				"The only generic types allowed are List<S> and ServiceAware<S>: " + serviceType);
 		}
 
-		ServiceConfiguration<?> configuration = getServiceUseConfiguration(serviceUseParameter,
-			(Class<?>) serviceType, bundleContext, configurations);
+		return (Class<?>) serviceType;
+	}
+
+	static Object resolveReturnValue(Class<?> memberType, Type genericMemberType, InjectService serviceUseParameter,
+		BundleContext bundleContext, Map<ServiceConfigurationKey, PooledServiceAware<?>> configurations) {
+
+		ServiceAware<?> configuration = getServiceUseConfiguration(serviceUseParameter,
+			getServiceType(memberType, genericMemberType), bundleContext, configurations);
 
 		if (List.class.equals(memberType) && (genericMemberType instanceof ParameterizedType)) {
 			return configuration.getServices();
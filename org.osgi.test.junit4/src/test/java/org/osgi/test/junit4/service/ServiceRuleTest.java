@@ -28,6 +28,8 @@ import org.junit.Test;
 import org.junit.rules.TestName;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceRegistration;
+import org.osgi.test.common.annotation.InjectService;
+import org.osgi.test.common.annotation.InjectService.Scope;
 import org.osgi.test.common.dictionary.Dictionaries;
 import org.osgi.test.common.service.ServiceConfiguration;
 import org.osgi.test.junit4.ExecutorRule;
@@ -91,6 +93,20 @@ public class ServiceRuleTest {
 			.withMessageContaining(" services (objectClass=org.osgi.test.junit4.types.Foo) didn't arrive within 200ms");
 	}
 
+	public static class ClassScopedService {
+		@InjectService(scope = Scope.CLASS)
+		Foo foo;
+	}
+
+	@Test
+	public void nonMethodScopeIsRejected() throws Exception {
+		try (ServiceRule serviceRule = new ServiceRule()) {
+			assertThatExceptionOfType(RuntimeException.class)
+				.isThrownBy(() -> serviceRule.init(new ClassScopedService()))
+				.withMessageContaining("scope CLASS is not supported");
+		}
+	}
+
 	@Test
 	public void requiredFailsWhenNoServiceWithTimeout() throws Exception {
 		assertThatExceptionOfType(AssertionError.class) //
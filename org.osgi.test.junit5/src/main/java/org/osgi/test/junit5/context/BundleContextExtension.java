@@ -16,15 +16,17 @@
 
 package org.osgi.test.junit5.context;
 
-import static org.osgi.test.common.inject.FieldInjector.findAnnotatedFields;
 import static org.osgi.test.common.inject.FieldInjector.findAnnotatedNonStaticFields;
+import static org.osgi.test.common.inject.FieldInjector.findAnnotatedStaticFields;
 import static org.osgi.test.common.inject.FieldInjector.setField;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 import org.junit.jupiter.api.extension.AfterAllCallback;
 import org.junit.jupiter.api.extension.AfterEachCallback;
@@ -38,12 +40,21 @@ import org.junit.jupiter.api.extension.ExtensionContext.Store.CloseableResource;
 import org.junit.jupiter.api.extension.ParameterContext;
 import org.junit.jupiter.api.extension.ParameterResolutionException;
 import org.junit.jupiter.api.extension.ParameterResolver;
+import org.junit.jupiter.api.parallel.ResourceAccessMode;
+import org.junit.jupiter.api.parallel.ResourceLock;
+import org.junit.platform.commons.support.AnnotationSupport;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.FrameworkUtil;
 import org.osgi.test.common.annotation.InjectBundleContext;
 import org.osgi.test.common.annotation.InjectInstallBundle;
+import org.osgi.test.common.annotation.MutatesBundles;
+import org.osgi.test.common.annotation.MutatesServices;
 import org.osgi.test.common.context.CloseableBundleContext;
+import org.osgi.test.common.context.FrameworkLocks;
+import org.osgi.test.common.context.FrameworkLocks.Locks;
+import org.osgi.test.common.context.FrameworkLocks.Mode;
 import org.osgi.test.common.install.InstallBundle;
+import org.osgi.test.junit5.service.ServiceExtension;
 
 /**
  * A JUnit 5 Extension to get the OSGi {@link BundleContext} of the test bundle.
@@ -67,26 +78,53 @@ import org.osgi.test.common.install.InstallBundle;
  * 	}
  * }
  * </pre>
+ * <p>
+ * The extension may be used by tests which run concurrently. Each test gets a
+ * bundle context of its own, wrapping the bundle context of its test class,
+ * and only the resources obtained through it are released at the end of the
+ * test. Installing, uninstalling, resolving and refreshing bundles however
+ * affects the whole framework, so tests which do so should be run one at a
+ * time, in one of two ways:
+ * <ul>
+ * <li>annotated with
+ * {@code @ResourceLock(BundleContextExtension.BUNDLES_RESOURCE)}, which JUnit
+ * schedules, or</li>
+ * <li>annotated with {@link MutatesBundles @MutatesBundles} or
+ * {@link MutatesServices @MutatesServices}, whose locks this extension holds
+ * from before each test until its bundle context has been cleaned up.</li>
+ * </ul>
+ * The extension also holds the {@link FrameworkLocks} for the
+ * {@link #BUNDLES_RESOURCE} and
+ * {@link org.osgi.test.junit5.service.ServiceExtension#SERVICES_RESOURCE}
+ * resource locks of a test, in the same access mode, so tests using either
+ * kind of annotation exclude each other.
  */
 public class BundleContextExtension
 	implements BeforeAllCallback, AfterAllCallback, AfterEachCallback, BeforeEachCallback, ParameterResolver {
 
 	public static final String		BUNDLE_CONTEXT_KEY	= "bundle.context";
 	public static final String		INSTALL_BUNDLE_KEY	= "install.bundle";
+	public static final String		FRAMEWORK_LOCKS_KEY	= "framework.locks";
 	public static final Namespace	NAMESPACE			= Namespace.create(BundleContextExtension.class);
 
+	/**
+	 * The key of the resource shared by tests which install, uninstall, resolve
+	 * or refresh bundles, for use with
+	 * {@link org.junit.jupiter.api.parallel.ResourceLock @ResourceLock}.
+	 */
+	public static final String		BUNDLES_RESOURCE	= "org.osgi.test.bundles";
+
 	@Override
 	public void beforeAll(ExtensionContext extensionContext) throws Exception {
-		List<Field> fields = findAnnotatedFields(extensionContext.getRequiredTestClass(), InjectBundleContext.class,
-			m -> Modifier.isStatic(m.getModifiers()));
+		List<Field> fields = findAnnotatedStaticFields(extensionContext.getRequiredTestClass(),
+			InjectBundleContext.class);
 
 		fields.forEach(field -> {
 			assertFieldIsBundleContext(field);
 			setField(field, null, getBundleContext(extensionContext));
 		});
 
-		fields = findAnnotatedFields(extensionContext.getRequiredTestClass(), InjectInstallBundle.class,
-			m -> Modifier.isStatic(m.getModifiers()));
+		fields = findAnnotatedStaticFields(extensionContext.getRequiredTestClass(), InjectInstallBundle.class);
 
 		fields.forEach(field -> {
 			assertFieldIsInstallBundle(field);
@@ -96,6 +134,14 @@ public class BundleContextExtension
 
 	@Override
 	public void beforeEach(ExtensionContext extensionContext) throws Exception {
+		Locks locks = FrameworkLocks.lock(extensionContext.getRequiredTestClass(),
+			extensionContext.getRequiredTestMethod(), resourceLockMode(extensionContext, BUNDLES_RESOURCE),
+			resourceLockMode(extensionContext, ServiceExtension.SERVICES_RESOURCE));
+		if (!locks.isEmpty()) {
+			// The store releases the locks if the test fails before afterEach
+			getStore(extensionContext).put(FRAMEWORK_LOCKS_KEY, new CloseableResourceLocks(locks));
+		}
+
 		List<Field> fields;
 		for (Object instance : extensionContext.getRequiredTestInstances()
 			.getAllInstances()) {
@@ -119,7 +165,40 @@ public class BundleContextExtension
 
 	@Override
 	public void afterEach(ExtensionContext extensionContext) throws Exception {
-		cleanup(extensionContext);
+		try {
+			cleanup(extensionContext);
+		} finally {
+			CloseableResourceLocks locks = getStore(extensionContext).remove(FRAMEWORK_LOCKS_KEY,
+				CloseableResourceLocks.class);
+			if (locks != null) {
+				locks.close();
+			}
+		}
+	}
+
+	/**
+	 * The mode of the strongest {@link ResourceLock} on the specified resource
+	 * declared by the test or one of its containers.
+	 */
+	static Mode resourceLockMode(ExtensionContext extensionContext, String resource) {
+		Mode mode = null;
+		for (Optional<ExtensionContext> context = Optional.of(extensionContext); context
+			.isPresent(); context = context.get()
+				.getParent()) {
+			List<ResourceLock> resourceLocks = context.get()
+				.getElement()
+				.map(element -> AnnotationSupport.findRepeatableAnnotations(element, ResourceLock.class))
+				.orElse(Collections.emptyList());
+			for (ResourceLock resourceLock : resourceLocks) {
+				if (resource.equals(resourceLock.value())) {
+					if (resourceLock.mode() == ResourceAccessMode.READ_WRITE) {
+						return Mode.WRITE;
+					}
+					mode = Mode.READ;
+				}
+			}
+		}
+		return mode;
 	}
 
 	public static void cleanup(ExtensionContext extensionContext) throws Exception {
@@ -215,23 +294,27 @@ public class BundleContextExtension
 	}
 
 	public static BundleContext getBundleContext(ExtensionContext extensionContext) {
-		BundleContext parentContext = extensionContext.getParent()
-			.filter(context -> context.getTestClass()
-				.isPresent())
-			.map(BundleContextExtension::getBundleContext)
-			.orElse(FrameworkUtil.getBundle(extensionContext.getRequiredTestClass())
-				.getBundleContext());
-
 		Class<?> requiredTestClass = extensionContext.getRequiredTestClass();
+		// The store computes the value at most once, even when tests sharing
+		// a parent context run concurrently.
 		BundleContext bundleContext = getStore(extensionContext)
 			.getOrComputeIfAbsent(BUNDLE_CONTEXT_KEY,
-				key -> new CloseableResourceBundleContext(requiredTestClass, parentContext),
+				key -> new CloseableResourceBundleContext(requiredTestClass, getParentBundleContext(extensionContext)),
 				CloseableResourceBundleContext.class)
 			.get();
 
 		return bundleContext;
 	}
 
+	private static BundleContext getParentBundleContext(ExtensionContext extensionContext) {
+		return extensionContext.getParent()
+			.filter(context -> context.getTestClass()
+				.isPresent())
+			.map(BundleContextExtension::getBundleContext)
+			.orElseGet(() -> FrameworkUtil.getBundle(extensionContext.getRequiredTestClass())
+				.getBundleContext());
+	}
+
 	public static InstallBundle getInstallbundle(ExtensionContext extensionContext) {
 		return getStore(extensionContext).getOrComputeIfAbsent(INSTALL_BUNDLE_KEY,
 			key -> new InstallBundle(getBundleContext(extensionContext)), InstallBundle.class);
@@ -255,6 +338,19 @@ public class BundleContextExtension
 		}
 	}
 
+	static class CloseableResourceLocks implements CloseableResource {
+		private final Locks locks;
+
+		CloseableResourceLocks(Locks locks) {
+			this.locks = locks;
+		}
+
+		@Override
+		public void close() {
+			locks.close();
+		}
+	}
+
 	@Override
 	public void afterAll(ExtensionContext extensionContext) throws Exception {
 		cleanup(extensionContext);
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.junit5.context;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ExtensionContext.Namespace;
+import org.junit.jupiter.api.extension.ExtensionContext.Store;
+import org.junit.jupiter.api.extension.ExtensionContext.Store.CloseableResource;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.test.common.leak.LeakDetector;
+import org.osgi.test.common.leak.LeakReport;
+
+/**
+ * A JUnit 5 Extension which reports services, bundles and service listeners
+ * left behind by a test class or test method, including those added through
+ * bundle contexts other than the one provided by
+ * {@link BundleContextExtension}.
+ * <p>
+ * Leaks are published as report entries. When the {@value #FAIL_ON_LEAK}
+ * configuration parameter is {@code true}, or the extension is constructed with
+ * {@code failOnLeak}, a leak fails the test with an {@link AssertionError}
+ * carrying the stack trace of each leaked resource's origin.
+ * <p>
+ * Register this extension before {@link BundleContextExtension} so that the
+ * resources cleaned up by that extension are not reported. The service
+ * listeners of the trackers backing services injected by
+ * {@code ServiceExtension} are not reported either, since they are closed
+ * after this extension checks a test method or are shared beyond a test
+ * class.
+ * <p>
+ * Example:
+ *
+ * <pre>
+ * &#64;ExtendWith(LeakDetectorExtension.class)
+ * &#64;ExtendWith(BundleContextExtension.class)
+ * class MyTests {
+ * 	// ...
+ * }
+ * </pre>
+ */
+public class LeakDetectorExtension implements BeforeAllCallback, AfterAllCallback, BeforeEachCallback, AfterEachCallback {
+
+	/**
+	 * The configuration parameter which makes leaks fail the test.
+	 */
+	public static final String		FAIL_ON_LEAK	= "org.osgi.test.junit5.leak.fail";
+	static final String				LEAK_DETECTOR	= "leak.detector";
+	static final Namespace			NAMESPACE		= Namespace.create(LeakDetectorExtension.class);
+
+	private final Optional<Boolean>	failOnLeak;
+
+	public LeakDetectorExtension() {
+		this.failOnLeak = Optional.empty();
+	}
+
+	public LeakDetectorExtension(boolean failOnLeak) {
+		this.failOnLeak = Optional.of(failOnLeak);
+	}
+
+	@Override
+	public void beforeAll(ExtensionContext extensionContext) throws Exception {
+		start(extensionContext);
+	}
+
+	@Override
+	public void afterAll(ExtensionContext extensionContext) throws Exception {
+		stop(extensionContext);
+	}
+
+	@Override
+	public void beforeEach(ExtensionContext extensionContext) throws Exception {
+		start(extensionContext);
+	}
+
+	@Override
+	public void afterEach(ExtensionContext extensionContext) throws Exception {
+		stop(extensionContext);
+	}
+
+	private void start(ExtensionContext extensionContext) {
+		LeakDetector leakDetector = new LeakDetector(FrameworkUtil.getBundle(extensionContext.getRequiredTestClass())
+			.getBundleContext()).start();
+		getStore(extensionContext).put(LEAK_DETECTOR, new CloseableResourceLeakDetector(leakDetector));
+	}
+
+	private void stop(ExtensionContext extensionContext) {
+		CloseableResourceLeakDetector closeableResourceLeakDetector = getStore(extensionContext).remove(LEAK_DETECTOR,
+			CloseableResourceLeakDetector.class);
+		if (closeableResourceLeakDetector == null) {
+			return;
+		}
+		LeakReport report = closeableResourceLeakDetector.get()
+			.stop();
+		if (!report.hasLeaks()) {
+			return;
+		}
+		extensionContext.publishReportEntry("leaks", report.toString());
+		if (failOnLeak.orElseGet(() -> extensionContext.getConfigurationParameter(FAIL_ON_LEAK)
+			.map(Boolean::parseBoolean)
+			.orElse(false))) {
+			report.assertNoLeaks();
+		}
+	}
+
+	static Store getStore(ExtensionContext extensionContext) {
+		return extensionContext.getStore(NAMESPACE.append(extensionContext.getUniqueId()));
+	}
+
+	static class CloseableResourceLeakDetector implements CloseableResource {
+
+		private final LeakDetector leakDetector;
+
+		CloseableResourceLeakDetector(LeakDetector leakDetector) {
+			this.leakDetector = leakDetector;
+		}
+
+		@Override
+		public void close() throws Exception {
+			leakDetector.close();
+		}
+
+		public LeakDetector get() {
+			return leakDetector;
+		}
+	}
+}
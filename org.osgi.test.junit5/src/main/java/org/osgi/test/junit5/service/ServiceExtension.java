@@ -16,7 +16,7 @@
 
 package org.osgi.test.junit5.service;
 
-import static org.osgi.test.common.inject.FieldInjector.findAnnotatedNonStaticFields;
+import static org.osgi.test.common.inject.FieldInjector.findAnnotatedNonStaticFieldsWithAnnotation;
 import static org.osgi.test.common.inject.FieldInjector.setField;
 
 import java.lang.reflect.Field;
@@ -24,22 +24,29 @@ import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 import org.junit.jupiter.api.extension.BeforeEachCallback;
 import org.junit.jupiter.api.extension.ExtensionConfigurationException;
 import org.junit.jupiter.api.extension.ExtensionContext;
 import org.junit.jupiter.api.extension.ExtensionContext.Namespace;
+import org.junit.jupiter.api.extension.ExtensionContext.Store.CloseableResource;
 import org.junit.jupiter.api.extension.ParameterContext;
 import org.junit.jupiter.api.extension.ParameterResolutionException;
 import org.junit.jupiter.api.extension.ParameterResolver;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.FrameworkUtil;
 import org.osgi.test.common.annotation.InjectService;
+import org.osgi.test.common.annotation.InjectService.Scope;
+import org.osgi.test.common.inject.AnnotatedField;
 import org.osgi.test.common.service.ServiceAware;
-import org.osgi.test.common.service.ServiceConfiguration;
 import org.osgi.test.common.service.ServiceConfigurationKey;
+import org.osgi.test.common.service.ServiceConfigurationPool;
+import org.osgi.test.common.service.ServiceConfigurationPool.PooledServiceAware;
 
 /**
  * A JUnit 5 Extension to depend on OSGi services.
@@ -59,22 +66,53 @@ import org.osgi.test.common.service.ServiceConfigurationKey;
  * 	}
  * }
  * </pre>
+ * <p>
+ * The extension may be used by tests which run concurrently. Service trackers
+ * are shared between concurrent tests through the
+ * {@link ServiceConfigurationPool}, which only hands out a shared tracker
+ * while it still holds the required services. Tests which register or
+ * unregister services that other tests inject should be annotated with
+ * {@code @ResourceLock(ServiceExtension.SERVICES_RESOURCE)}, or with
+ * {@link org.osgi.test.common.annotation.MutatesServices @MutatesServices}
+ * when they also use {@code BundleContextExtension}, which then holds the
+ * same lock for both.
  */
 public class ServiceExtension implements BeforeEachCallback, ParameterResolver {
 
-	final static Namespace					NAMESPACE	= Namespace.create(ServiceExtension.class);
+	final static Namespace					NAMESPACE			= Namespace.create(ServiceExtension.class);
+
+	/**
+	 * The key of the resource shared by tests which register or unregister
+	 * services injected into other tests, for use with
+	 * {@link org.junit.jupiter.api.parallel.ResourceLock @ResourceLock}.
+	 */
+	public static final String				SERVICES_RESOURCE	= "org.osgi.test.services";
 
 	@Override
 	public void beforeEach(ExtensionContext extensionContext) throws Exception {
-		List<Field> fields = findAnnotatedNonStaticFields(extensionContext.getRequiredTestClass(), InjectService.class);
+		List<AnnotatedField<InjectService>> fields = findAnnotatedNonStaticFieldsWithAnnotation(
+			extensionContext.getRequiredTestClass(), InjectService.class);
 
 		BundleContext bundleContext = FrameworkUtil.getBundle(extensionContext.getRequiredTestClass())
 			.getBundleContext();
 
-		fields.forEach(field -> {
+		// Open the trackers for all fields before waiting on any of them so
+		// that the wait is bounded by the longest timeout rather than the sum
+		// of all timeouts.
+		List<ScopedServiceAware> serviceAwares = new ArrayList<>(fields.size());
+		for (AnnotatedField<InjectService> annotatedField : fields) {
+			Field field = annotatedField.getField();
 			assertValidFieldCandidate(field);
 
-			InjectService serviceUseParameter = field.getAnnotation(InjectService.class);
+			InjectService serviceUseParameter = annotatedField.getAnnotation();
+			serviceAwares.add(getScopedServiceAware(serviceUseParameter,
+				getServiceType(field.getType(), field.getGenericType()), bundleContext, extensionContext));
+		}
+		ServiceConfigurationPool.awaitAll(serviceAwares, ScopedServiceAware::await);
+
+		fields.forEach(annotatedField -> {
+			Field field = annotatedField.getField();
+			InjectService serviceUseParameter = annotatedField.getAnnotation();
 			Class<?> memberType = field.getType();
 			Type genericMemberType = field.getGenericType();
 
@@ -134,23 +172,125 @@ public class ServiceExtension implements BeforeEachCallback, ParameterResolver {
 		}
 	}
 
-	static <X> ServiceConfiguration<X> getServiceUseConfiguration(
+	static <X> ServiceAware<X> getServiceUseConfiguration(
 		InjectService injectService,
 		Class<X> serviceType,
 		BundleContext bundleContext,
 		ExtensionContext extensionContext) {
 		@SuppressWarnings("unchecked")
-		ServiceConfiguration<X> serviceConfiguration = extensionContext.getStore(NAMESPACE)
-			.getOrComputeIfAbsent(new ServiceConfigurationKey(serviceType, injectService),
-				k -> new ServiceConfiguration<>(serviceType, injectService.filter(), injectService.filterArguments(),
-					injectService.cardinality(), injectService.timeout()).init(bundleContext),
-				ServiceConfiguration.class);
-		return serviceConfiguration;
+		ServiceAware<X> serviceAware = (ServiceAware<X>) getScopedServiceAware(injectService, serviceType,
+			bundleContext, extensionContext).await();
+		return serviceAware;
 	}
 
-	static Object resolveReturnValue(Class<?> memberType, Type genericMemberType, InjectService injectService,
-		BundleContext bundleContext, ExtensionContext extensionContext) throws ParameterResolutionException {
+	static ScopedServiceAware getScopedServiceAware(InjectService injectService, Class<?> serviceType,
+		BundleContext bundleContext, ExtensionContext extensionContext) {
+		return getScopedContext(injectService.scope(), extensionContext).getStore(NAMESPACE)
+			.getOrComputeIfAbsent(
+				new ScopedKey(new ServiceConfigurationKey(serviceType, injectService), bundleContext.getBundle()),
+				k -> new ScopedServiceAware(ServiceConfigurationPool.getDefault()
+					.open(serviceType, injectService, bundleContext), injectService.scope() != Scope.METHOD),
+				ScopedServiceAware.class);
+	}
 
+	static ExtensionContext getScopedContext(Scope scope, ExtensionContext extensionContext) {
+		switch (scope) {
+			case GLOBAL :
+				return extensionContext.getRoot();
+			case CLASS :
+				ExtensionContext context = extensionContext;
+				while (context.getTestMethod()
+					.isPresent()) {
+					context = context.getParent()
+						.orElseThrow(() -> new ExtensionConfigurationException(
+							"No test class context found for " + extensionContext.getUniqueId()));
+				}
+				return context;
+			default :
+				return extensionContext;
+		}
+	}
+
+	/**
+	 * Identifies a scoped service configuration. Configurations in the root
+	 * context are shared by every test of the run, so the bundle whose context
+	 * tracks the services is part of the key.
+	 */
+	static final class ScopedKey {
+		private final ServiceConfigurationKey	configurationKey;
+		private final Bundle					bundle;
+
+		ScopedKey(ServiceConfigurationKey configurationKey, Bundle bundle) {
+			this.configurationKey = configurationKey;
+			this.bundle = bundle;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(configurationKey, bundle);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ScopedKey)) {
+				return false;
+			}
+			ScopedKey other = (ScopedKey) obj;
+			return configurationKey.equals(other.configurationKey) && Objects.equals(bundle, other.bundle);
+		}
+	}
+
+	/**
+	 * Holds a pooled service configuration for the duration of a scope and
+	 * releases it back to the pool when the scope ends. The cardinality of a
+	 * configuration shared by a class or global scope is checked whenever it
+	 * is awaited again and when the scope ends.
+	 */
+	static class ScopedServiceAware implements CloseableResource {
+		private final PooledServiceAware<?>	serviceAware;
+		private final boolean				shared;
+		// guarded by this
+		private boolean						awaited;
+
+		ScopedServiceAware(PooledServiceAware<?> serviceAware, boolean shared) {
+			this.serviceAware = serviceAware;
+			this.shared = shared;
+		}
+
+		synchronized ServiceAware<?> await() {
+			if (!awaited) {
+				serviceAware.await();
+				awaited = true;
+			} else if (shared) {
+				assertCardinality();
+			}
+			return serviceAware;
+		}
+
+		@Override
+		public synchronized void close() throws Throwable {
+			try {
+				if (shared) {
+					assertCardinality();
+				}
+			} finally {
+				serviceAware.close();
+			}
+		}
+
+		private void assertCardinality() {
+			int size = serviceAware.size();
+			if (size < serviceAware.getCardinality()) {
+				throw new AssertionError(serviceAware.getCardinality() - size + "/" + serviceAware.getCardinality()
+					+ " services " + serviceAware.getFilter() + " are no longer available");
+			}
+		}
+	}
+
+	static Class<?> getServiceType(Class<?> memberType, Type genericMemberType) throws ParameterResolutionException {
 		Type serviceType = genericMemberType;
 
 		if (List.class.equals(memberType) && (genericMemberType instanceof ParameterizedType)) {
@@ -166,8 +306,14 @@ public class ServiceExtension implements BeforeEachCallback, ParameterResolver {
 				"The only generic types allowed are List<S> and ServiceAware<S>: " + serviceType);
 		}
 
-		ServiceConfiguration<?> configuration = getServiceUseConfiguration(injectService,
-			(Class<?>) serviceType, bundleContext, extensionContext);
+		return (Class<?>) serviceType;
+	}
+
+	static Object resolveReturnValue(Class<?> memberType, Type genericMemberType, InjectService injectService,
+		BundleContext bundleContext, ExtensionContext extensionContext) throws ParameterResolutionException {
+
+		ServiceAware<?> configuration = getServiceUseConfiguration(injectService,
+			getServiceType(memberType, genericMemberType), bundleContext, extensionContext);
 
 		if (List.class.equals(memberType) && (genericMemberType instanceof ParameterizedType)) {
 			return configuration.getServices();
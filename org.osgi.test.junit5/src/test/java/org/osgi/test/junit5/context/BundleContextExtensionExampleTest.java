@@ -23,6 +23,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.ResourceLock;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.osgi.framework.BundleContext;
@@ -34,6 +35,7 @@ import org.osgi.test.common.install.InstallBundle;
  * This is how a real test class should use {@link BundleContextExtension}.
  */
 @ExtendWith(BundleContextExtension.class)
+@ResourceLock(BundleContextExtension.BUNDLES_RESOURCE)
 public class BundleContextExtensionExampleTest {
 
 	// BundleContext injection
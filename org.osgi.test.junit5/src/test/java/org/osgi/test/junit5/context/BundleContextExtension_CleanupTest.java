@@ -50,6 +50,7 @@ import java.util.stream.Stream;
 
 import org.junit.jupiter.api.DynamicNode;
 import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.parallel.ResourceLock;
 import org.junit.jupiter.engine.JupiterTestEngine;
 import org.junit.platform.engine.TestDescriptor;
 import org.junit.platform.testkit.engine.EngineTestKit;
@@ -76,6 +77,7 @@ import org.osgi.test.junit5.context.MultiLevelCleanupTest.CallbackPoint;
 import org.osgi.test.junit5.testutils.OSGiSoftAssertions;
 import org.osgi.test.junit5.types.Foo;
 
+@ResourceLock(BundleContextExtension.BUNDLES_RESOURCE)
 public class BundleContextExtension_CleanupTest {
 
 	/**
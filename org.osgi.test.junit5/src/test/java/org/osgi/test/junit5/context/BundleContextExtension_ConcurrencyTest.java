@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.junit5.context;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.RepetitionInfo;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.osgi.framework.BundleContext;
+import org.osgi.test.common.annotation.InjectBundleContext;
+import org.osgi.test.common.context.CloseableBundleContext;
+import org.osgi.test.common.dictionary.Dictionaries;
+import org.osgi.test.junit5.types.Foo;
+
+@ExtendWith(BundleContextExtension.class)
+@Execution(ExecutionMode.CONCURRENT)
+public class BundleContextExtension_ConcurrencyTest {
+	static final int		THREADS			= 8;
+	static final int		REGISTRATIONS	= 50;
+
+	@InjectBundleContext
+	static BundleContext	classContext;
+
+	@RepeatedTest(4)
+	void concurrentRegistrationsAreReleasedPerTest(@InjectBundleContext BundleContext bundleContext,
+		RepetitionInfo repetitionInfo) throws Exception {
+		String filter = "(case=concurrency-" + repetitionInfo.getCurrentRepetition() + ")";
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < REGISTRATIONS; i++) {
+						bundleContext.registerService(Foo.class, new Foo() {},
+							Dictionaries.dictionaryOf("case", "concurrency-" + repetitionInfo.getCurrentRepetition()));
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertThat(bundleContext.getServiceReferences(Foo.class, filter)).hasSize(THREADS * REGISTRATIONS);
+
+		CloseableBundleContext.close(bundleContext);
+
+		assertThat(classContext.getServiceReferences(Foo.class, filter)).isEmpty();
+	}
+}
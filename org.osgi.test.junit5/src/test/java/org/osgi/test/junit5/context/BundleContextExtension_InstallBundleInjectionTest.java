@@ -9,6 +9,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.ResourceLock;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.osgi.framework.BundleContext;
@@ -18,6 +19,7 @@ import org.osgi.test.common.install.InstallBundle;
 import org.osgi.test.junit5.testutils.OSGiSoftAssertions;
 
 @ExtendWith(BundleContextExtension.class)
+@ResourceLock(BundleContextExtension.BUNDLES_RESOURCE)
 public class BundleContextExtension_InstallBundleInjectionTest {
 
 	@InjectBundleContext
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.junit5.context;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collection;
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.ResourceLock;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+import org.osgi.test.common.annotation.InjectBundleContext;
+import org.osgi.test.common.annotation.InjectInstallBundle;
+import org.osgi.test.common.install.BundleBuilder;
+import org.osgi.test.common.install.InstallBundle;
+
+@ExtendWith(BundleContextExtension.class)
+@ResourceLock(BundleContextExtension.BUNDLES_RESOURCE)
+public class InstallBundleBuilderTest {
+
+	static final String	BUILT_PROPERTY	= "org.osgi.test.junit5.built";
+
+	@InjectBundleContext
+	BundleContext		bundleContext;
+
+	@InjectInstallBundle
+	InstallBundle		installBundle;
+
+	/**
+	 * Added to the built bundle, where it registers a service naming the
+	 * bundle.
+	 */
+	public static class Activator implements BundleActivator {
+		@Override
+		public void start(BundleContext context) throws Exception {
+			Dictionary<String, Object> properties = new Hashtable<>();
+			properties.put(BUILT_PROPERTY, context.getBundle()
+				.getSymbolicName());
+			context.registerService(String.class, "built", properties);
+		}
+
+		@Override
+		public void stop(BundleContext context) throws Exception {}
+	}
+
+	static BundleBuilder activatorBundle(String symbolicName) {
+		return new BundleBuilder(symbolicName).importPackage("org.osgi.framework")
+			.header(Constants.BUNDLE_ACTIVATOR, Activator.class.getName())
+			.addClass(Activator.class);
+	}
+
+	@Test
+	void installsAndStartsBuiltBundle() throws Exception {
+		BundleBuilder builder = activatorBundle("test.builder.started");
+		Bundle bundle = installBundle.installBundle(builder, true);
+		assertThat(bundle.getState()).isEqualTo(Bundle.ACTIVE);
+		assertThat(bundle.getLocation()).isEqualTo(builder.getLocation());
+		assertThat(bundle.getSymbolicName()).isEqualTo("test.builder.started");
+
+		Collection<ServiceReference<String>> references = bundleContext.getServiceReferences(String.class,
+			"(" + BUILT_PROPERTY + "=test.builder.started)");
+		assertThat(references).hasSize(1)
+			.allMatch(reference -> reference.getBundle()
+				.equals(bundle));
+	}
+
+	@Test
+	void installsBuiltBundleWithoutStarting() throws Exception {
+		Bundle bundle = installBundle.installBundle(activatorBundle("test.builder.installed"), false);
+		assertThat(bundle.getState()).isEqualTo(Bundle.INSTALLED);
+		assertThat(bundleContext.getServiceReferences(String.class,
+			"(" + BUILT_PROPERTY + "=test.builder.installed)")).isEmpty();
+	}
+
+	@Test
+	void resolvesBuiltBundlesAgainstEachOther() throws Exception {
+		Bundle exporter = installBundle.installBundle(new BundleBuilder("test.builder.exporter")
+			.exportPackage("org.osgi.test.junit5.built;version=1.0"), false);
+		Bundle importer = installBundle.installBundle(new BundleBuilder("test.builder.importer")
+			.importPackage("org.osgi.test.junit5.built;version=\"[1.0,2)\""), true);
+		assertThat(importer.getState()).isEqualTo(Bundle.ACTIVE);
+		assertThat(exporter.getState()).isEqualTo(Bundle.RESOLVED);
+	}
+}
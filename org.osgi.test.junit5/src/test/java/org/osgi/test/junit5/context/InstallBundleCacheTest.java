@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.junit5.context;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.ResourceLock;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.test.common.annotation.InjectBundleContext;
+import org.osgi.test.common.context.CloseableBundleContext;
+import org.osgi.test.common.install.InstallBundle;
+
+@ExtendWith(BundleContextExtension.class)
+@ResourceLock(BundleContextExtension.BUNDLES_RESOURCE)
+public class InstallBundleCacheTest {
+
+	@InjectBundleContext
+	BundleContext bundleContext;
+
+	@Test
+	void identicalContentReusesBundle() throws Exception {
+		InstallBundle installBundle = new InstallBundle(bundleContext, true);
+		Bundle first = installBundle.installBundle("tb1.jar", true);
+		try {
+			assertThat(first.getLocation()).startsWith(InstallBundle.CACHE_LOCATION_PREFIX);
+			assertThat(first.getState()).isEqualTo(Bundle.ACTIVE);
+
+			Bundle second = installBundle.installBundle("tb1.jar", false);
+			assertThat(second).isSameAs(first);
+			assertThat(second.getState()).isNotEqualTo(Bundle.ACTIVE);
+		} finally {
+			first.uninstall();
+		}
+	}
+
+	@Test
+	void cachedBundleSurvivesCleanup() throws Exception {
+		BundleContext closeable = CloseableBundleContext.proxy(getClass(), bundleContext);
+		Bundle bundle = new InstallBundle(closeable, true).installBundle("tb1.jar", false);
+		try {
+			((AutoCloseable) closeable).close();
+			assertThat(bundle.getState()).isNotEqualTo(Bundle.UNINSTALLED);
+		} finally {
+			bundle.uninstall();
+		}
+	}
+
+	@Test
+	void cachedBundleIsStoppedOnClose() throws Exception {
+		BundleContext closeable = CloseableBundleContext.proxy(getClass(), bundleContext);
+		Bundle bundle = new InstallBundle(closeable, true).installBundle("tb1.jar", true);
+		try {
+			assertThat(bundle.getState()).isEqualTo(Bundle.ACTIVE);
+			((AutoCloseable) closeable).close();
+			assertThat(bundle.getState()).isEqualTo(Bundle.RESOLVED);
+		} finally {
+			bundle.uninstall();
+		}
+	}
+
+	@Test
+	void evictCachedBundles() throws Exception {
+		Bundle bundle = new InstallBundle(bundleContext, true).installBundle("tb1.jar", false);
+		assertThat(InstallBundle.evictCachedBundles(bundleContext)).contains(bundle);
+		assertThat(bundle.getState()).isEqualTo(Bundle.UNINSTALLED);
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.junit5.context;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.parallel.ResourceLock;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.test.common.annotation.InjectBundleContext;
+import org.osgi.test.common.annotation.InjectInstallBundle;
+import org.osgi.test.common.install.InstallBundle;
+
+@ExtendWith(BundleContextExtension.class)
+@ResourceLock(BundleContextExtension.BUNDLES_RESOURCE)
+public class InstallBundleFromPathTest {
+
+	@InjectBundleContext
+	BundleContext	bundleContext;
+
+	@InjectInstallBundle
+	InstallBundle	installBundle;
+
+	@TempDir
+	Path			tempDir;
+
+	static InputStream tb1() throws Exception {
+		return FrameworkUtil.getBundle(InstallBundleFromPathTest.class)
+			.getEntry("tb1.jar")
+			.openStream();
+	}
+
+	@Test
+	void installsJarByReference() throws Exception {
+		Path jar = tempDir.resolve("tb1.jar");
+		try (InputStream in = tb1()) {
+			Files.copy(in, jar);
+		}
+		Bundle bundle = installBundle.installBundle(jar, true);
+		assertThat(bundle.getState()).isEqualTo(Bundle.ACTIVE);
+		assertThat(bundle.getLocation()).startsWith("reference:");
+	}
+
+	@Test
+	void installsJarThroughCacheWhenCaching() throws Exception {
+		Path jar = tempDir.resolve("tb1.jar");
+		try (InputStream in = tb1()) {
+			Files.copy(in, jar);
+		}
+		Bundle bundle = new InstallBundle(bundleContext, true).installBundle(jar, false);
+		try {
+			assertThat(bundle.getLocation()).startsWith(InstallBundle.CACHE_LOCATION_PREFIX);
+		} finally {
+			bundle.uninstall();
+		}
+	}
+
+	@Test
+	void installsExplodedDirectory() throws Exception {
+		Path dir = tempDir.resolve("tb1");
+		try (ZipInputStream zip = new ZipInputStream(tb1())) {
+			for (ZipEntry entry; (entry = zip.getNextEntry()) != null;) {
+				Path target = dir.resolve(entry.getName());
+				if (entry.isDirectory()) {
+					Files.createDirectories(target);
+				} else {
+					Files.createDirectories(target.getParent());
+					Files.copy(zip, target);
+				}
+			}
+		}
+		Bundle bundle = installBundle.installBundle(dir, false);
+		assertThat(bundle.getLocation()).startsWith("reference:")
+			.endsWith("/tb1/");
+	}
+
+	@Test
+	void installsFromSuppliedStream() throws Exception {
+		Bundle bundle = installBundle.installBundle("supplied", InstallBundleFromPathTest::tb1, true);
+		assertThat(bundle.getState()).isEqualTo(Bundle.ACTIVE);
+		assertThat(bundle.getLocation()).isEqualTo("supplied");
+	}
+
+	@Test
+	void missingPathFails() {
+		assertThatExceptionOfType(AssertionError.class)
+			.isThrownBy(() -> installBundle.installBundle(tempDir.resolve("missing.jar"), false));
+	}
+}
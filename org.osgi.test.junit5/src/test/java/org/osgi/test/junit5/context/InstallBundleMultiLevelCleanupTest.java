@@ -3,6 +3,7 @@ package org.osgi.test.junit5.context;
 import java.util.Map;
 
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.ResourceLock;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.FrameworkUtil;
@@ -13,6 +14,7 @@ import org.osgi.test.junit5.context.BundleContextExtension_CleanupTest.BundleChe
 
 @ExtendWith(PreDestroyCallback.class)
 @ExtendWith(BundleContextExtension.class)
+@ResourceLock(BundleContextExtension.BUNDLES_RESOURCE)
 class InstallBundleMultiLevelCleanupTest extends MultiLevelCleanupTest {
 	static final Bundle		bundle	= FrameworkUtil.getBundle(InstallBundleMultiLevelCleanupTest.class);
 
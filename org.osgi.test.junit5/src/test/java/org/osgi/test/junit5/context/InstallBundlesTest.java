@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.junit5.context;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.ResourceLock;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.test.common.annotation.InjectBundleContext;
+import org.osgi.test.common.annotation.InjectInstallBundle;
+import org.osgi.test.common.install.InstallBundle;
+
+@ExtendWith(BundleContextExtension.class)
+@ResourceLock(BundleContextExtension.BUNDLES_RESOURCE)
+public class InstallBundlesTest {
+
+	@InjectBundleContext
+	BundleContext	bundleContext;
+
+	@InjectInstallBundle
+	InstallBundle	installBundle;
+
+	@Test
+	void installsAndStartsAll() {
+		List<Bundle> bundles = installBundle.installBundles("tb1.jar", "beforeEach.jar");
+		assertThat(bundles).hasSize(2)
+			.allMatch(bundle -> bundle.getState() == Bundle.ACTIVE);
+		assertThat(bundles.get(0)
+			.getLocation()).isEqualTo("/tb1.jar");
+	}
+
+	@Test
+	void installsWithoutStarting() {
+		List<Bundle> bundles = installBundle.installBundles(false, "tb1.jar");
+		assertThat(bundles).hasSize(1)
+			.allMatch(bundle -> bundle.getState() == Bundle.RESOLVED);
+	}
+
+	@Test
+	void installsEveryMatchingEntry() {
+		List<Bundle> bundles = installBundle.installBundles(false, "nested/*.jar");
+		assertThat(bundles).hasSize(3)
+			.allMatch(bundle -> bundle.getLocation()
+				.startsWith("/nested/"));
+	}
+
+	@Test
+	void locationIsTheEntryPath() {
+		assertThat(installBundle.installBundle("tb1.jar", false)
+			.getLocation()).isEqualTo("/tb1.jar");
+		assertThat(installBundle.installBundle("nested/test.jar", false)
+			.getLocation()).isEqualTo("/nested/test.jar");
+	}
+
+	@Test
+	void unresolvedBundlesFailBeforeStarting() {
+		assertThatExceptionOfType(AssertionError.class)
+			.isThrownBy(() -> installBundle.installBundles("tb1.jar", "unresolvable.jar"))
+			.withMessageContaining("/unresolvable.jar")
+			.withMessageNotContaining("/tb1.jar");
+		assertThat(bundleContext.getBundle("/tb1.jar")
+			.getState()).isNotEqualTo(Bundle.ACTIVE);
+	}
+
+	@Test
+	void missingEntryFails() {
+		assertThatExceptionOfType(AssertionError.class)
+			.isThrownBy(() -> installBundle.installBundles("doesNotExist.jar"))
+			.withMessageContaining("doesNotExist.jar");
+	}
+}
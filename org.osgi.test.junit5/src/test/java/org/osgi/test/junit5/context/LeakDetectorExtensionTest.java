@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.junit5.context;
+
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.engine.JupiterTestEngine;
+import org.junit.platform.testkit.engine.EngineTestKit;
+import org.junit.platform.testkit.engine.EngineExecutionResults;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceListener;
+import org.osgi.test.common.annotation.InjectBundleContext;
+import org.osgi.test.common.annotation.InjectService;
+import org.osgi.test.common.annotation.InjectService.Scope;
+import org.osgi.test.junit5.service.ServiceExtension;
+import org.osgi.test.junit5.testutils.TestKitUtils;
+import org.osgi.test.junit5.types.Foo;
+
+public class LeakDetectorExtensionTest {
+
+	static EngineExecutionResults run(Class<?> testClass) {
+		TestKitUtils.checkClass(testClass);
+		return EngineTestKit.engine(new JupiterTestEngine())
+			.configurationParameter(LeakDetectorExtension.FAIL_ON_LEAK, "true")
+			.selectors(selectClass(testClass))
+			.execute();
+	}
+
+	@ExtendWith(LeakDetectorExtension.class)
+	@ExtendWith(BundleContextExtension.class)
+	@ExtendWith(ServiceExtension.class)
+	static class InjectedServices {
+		@InjectService(cardinality = 0)
+		Foo	methodScoped;
+
+		@InjectService(cardinality = 0, scope = Scope.CLASS)
+		Foo	classScoped;
+
+		@InjectService(cardinality = 0, scope = Scope.GLOBAL)
+		Foo	globalScoped;
+
+		@Test
+		void first() {}
+
+		@Test
+		void second() {}
+	}
+
+	@Test
+	void injectedServiceTrackersAreNotLeaks() {
+		EngineExecutionResults results = run(InjectedServices.class);
+		results.testEvents()
+			.assertStatistics(stats -> stats.failed(0)
+				.succeeded(2));
+		results.containerEvents()
+			.assertStatistics(stats -> stats.failed(0));
+	}
+
+	@ExtendWith(LeakDetectorExtension.class)
+	@ExtendWith(BundleContextExtension.class)
+	@ExtendWith(ServiceExtension.class)
+	static class InjectedServicesAndLeakedListener {
+		@InjectService(cardinality = 0)
+		Foo	methodScoped;
+
+		@InjectBundleContext
+		BundleContext	bundleContext;
+
+		static BundleContext	leakedFrom;
+		static ServiceListener	leaked;
+
+		@Test
+		void leaksListener() {
+			// not added through the injected bundle context, so
+			// BundleContextExtension does not remove it
+			leakedFrom = bundleContext.getBundle()
+				.getBundleContext();
+			leaked = event -> {};
+			leakedFrom.addServiceListener(leaked);
+		}
+	}
+
+	@Test
+	void leakedListenerIsStillReported() {
+		try {
+			run(InjectedServicesAndLeakedListener.class).testEvents()
+				.assertStatistics(stats -> stats.failed(1));
+		} finally {
+			if (InjectedServicesAndLeakedListener.leaked != null) {
+				InjectedServicesAndLeakedListener.leakedFrom
+					.removeServiceListener(InjectedServicesAndLeakedListener.leaked);
+			}
+		}
+	}
+}
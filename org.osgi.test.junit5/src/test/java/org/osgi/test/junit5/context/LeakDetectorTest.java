@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.junit5.context;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.test.common.leak.Leak;
+import org.osgi.test.common.leak.LeakDetector;
+import org.osgi.test.common.leak.LeakReport;
+import org.osgi.test.junit5.types.Foo;
+
+public class LeakDetectorTest {
+
+	BundleContext bundleContext;
+
+	@BeforeEach
+	void beforeEach() {
+		bundleContext = FrameworkUtil.getBundle(LeakDetectorTest.class)
+			.getBundleContext();
+	}
+
+	@Test
+	void reportsLeakedService() {
+		LeakDetector leakDetector = new LeakDetector(bundleContext).start();
+		ServiceRegistration<Foo> reg = bundleContext.registerService(Foo.class, new Foo() {}, null);
+		try {
+			LeakReport report = leakDetector.stop();
+			assertThat(report.getLeaks()).hasSize(1)
+				.first()
+				.extracting(Leak::getKind)
+				.isEqualTo(Leak.Kind.SERVICE);
+			assertThat(report.getAfter()
+				.getServiceCount()).isEqualTo(report.getBefore()
+					.getServiceCount() + 1);
+			assertThatCode(report::assertNoLeaks).isInstanceOf(AssertionError.class)
+				.hasMessageContaining(Foo.class.getName())
+				.satisfies(e -> assertThat(e.getSuppressed()[0]
+					.getStackTrace()).anyMatch(element -> element.getMethodName()
+						.equals("reportsLeakedService")));
+		} finally {
+			reg.unregister();
+		}
+	}
+
+	@Test
+	void reportsLeakedListener() {
+		LeakDetector leakDetector = new LeakDetector(bundleContext).start();
+		ServiceListener listener = event -> {};
+		bundleContext.addServiceListener(listener);
+		try {
+			LeakReport report = leakDetector.stop();
+			assertThat(report.getLeaks()).extracting(Leak::getKind)
+				.containsExactly(Leak.Kind.LISTENER);
+		} finally {
+			bundleContext.removeServiceListener(listener);
+		}
+	}
+
+	@Test
+	void cleanedUpResourcesAreNotLeaks() {
+		LeakDetector leakDetector = new LeakDetector(bundleContext).start();
+		bundleContext.registerService(Foo.class, new Foo() {}, null)
+			.unregister();
+		ServiceListener listener = event -> {};
+		bundleContext.addServiceListener(listener);
+		bundleContext.removeServiceListener(listener);
+		LeakReport report = leakDetector.stop();
+		assertThat(report.hasLeaks()).isFalse();
+		assertThatCode(report::assertNoLeaks).doesNotThrowAnyException();
+	}
+}
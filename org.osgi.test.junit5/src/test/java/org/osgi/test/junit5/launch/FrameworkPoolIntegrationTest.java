@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.junit5.launch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.launch.Framework;
+import org.osgi.framework.launch.FrameworkFactory;
+import org.osgi.test.common.install.BundleBuilder;
+import org.osgi.test.common.launch.FrameworkPool;
+import org.osgi.test.common.launch.FrameworkPool.PooledFramework;
+
+/**
+ * Runs a {@link FrameworkPool} against the framework implementation which runs
+ * the tests, rather than against mocks.
+ */
+public class FrameworkPoolIntegrationTest {
+
+	@TempDir
+	Path tempDir;
+
+	static FrameworkFactory frameworkFactory() {
+		// The framework implementation is on the class path of the framework
+		// running the tests, not on the class path of this bundle.
+		Iterator<FrameworkFactory> factories = ServiceLoader
+			.load(FrameworkFactory.class, FrameworkFactory.class.getClassLoader())
+			.iterator();
+		assertThat(factories.hasNext()).as("FrameworkFactory")
+			.isTrue();
+		return factories.next();
+	}
+
+	String write(BundleBuilder builder) throws Exception {
+		Path jar = tempDir.resolve(builder.getLocation()
+			.replaceAll("\\W", "_") + ".jar");
+		Files.write(jar, builder.build());
+		return jar.toUri()
+			.toString();
+	}
+
+	@Test
+	void releasedFrameworkIsResetAndReused() throws Exception {
+		String baseLocation = write(new BundleBuilder("test.pool.base").exportPackage("test.pool.base"));
+		String extraLocation = write(new BundleBuilder("test.pool.extra").importPackage("test.pool.base"));
+
+		Framework framework;
+		try (FrameworkPool pool = new FrameworkPool(frameworkFactory(), Collections.emptyMap(),
+			Collections.singletonList(baseLocation), 1)) {
+			try (PooledFramework pooled = pool.acquire()) {
+				framework = pooled.getFramework();
+				assertThat(framework.getState()).isEqualTo(Bundle.ACTIVE);
+				BundleContext frameworkContext = framework.getBundleContext();
+				Bundle base = frameworkContext.getBundle(baseLocation);
+				assertThat(base.getState()).isEqualTo(Bundle.ACTIVE);
+
+				// Installed outside the pooled context, so only the reset
+				// removes it.
+				frameworkContext.installBundle(extraLocation)
+					.start();
+				base.stop();
+			}
+			assertThat(pool.getIdleCount()).isEqualTo(1);
+
+			try (PooledFramework pooled = pool.acquire()) {
+				assertThat(pooled.getFramework()).isSameAs(framework);
+				BundleContext frameworkContext = framework.getBundleContext();
+				assertThat(frameworkContext.getBundle(extraLocation)).isNull();
+				assertThat(frameworkContext.getBundle(baseLocation)
+					.getState()).isEqualTo(Bundle.ACTIVE);
+				assertThat(frameworkContext.getBundles()).hasSize(2);
+
+				pooled.getBundleContext()
+					.installBundle(extraLocation);
+			}
+			assertThat(pool.getIdleCount()).isEqualTo(1);
+			assertThat(framework.getBundleContext()
+				.getBundle(extraLocation)).isNull();
+		}
+		assertThat(framework.getState()).isNotEqualTo(Bundle.ACTIVE);
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.junit5.service;
+
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.osgi.test.assertj.promise.PromiseAssert.assertThat;
+import static org.osgi.test.common.dictionary.Dictionaries.dictionaryOf;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.test.common.annotation.InjectBundleContext;
+import org.osgi.test.common.annotation.InjectService;
+import org.osgi.test.common.service.ServiceAware;
+import org.osgi.test.junit5.context.BundleContextExtension;
+import org.osgi.test.junit5.types.Foo;
+import org.osgi.util.promise.Promise;
+
+@ExtendWith(BundleContextExtension.class)
+@ExtendWith(ServiceExtension.class)
+public class AsyncServiceAwareTest {
+
+	@InjectBundleContext
+	BundleContext		bundleContext;
+	@InjectService(cardinality = 0)
+	ServiceAware<Foo>	fooServiceAware;
+
+	@Test
+	public void testServiceAsync() throws Exception {
+		Promise<Foo> promise = fooServiceAware.serviceAsync();
+		assertThat(promise).isNotDone();
+
+		Foo foo = new Foo() {};
+		bundleContext.registerService(Foo.class, foo, null);
+		assertThat(promise).isDone()
+			.hasSameValue(foo);
+	}
+
+	@Test
+	public void testServicesAsync() throws Exception {
+		Promise<List<Foo>> promise = fooServiceAware.servicesAsync(2);
+
+		Foo foo1 = new Foo() {};
+		bundleContext.registerService(Foo.class, foo1, null);
+		assertThat(promise).isNotDone();
+
+		Foo foo2 = new Foo() {};
+		bundleContext.registerService(Foo.class, foo2, null);
+		assertThat(promise).isDone()
+			.hasValueMatching(services -> services.size() == 2 && services.contains(foo1) && services.contains(foo2));
+	}
+
+	@Test
+	public void testServiceAsyncHighestRanked() throws Exception {
+		Foo low = new Foo() {};
+		bundleContext.registerService(Foo.class, low, dictionaryOf(Constants.SERVICE_RANKING, -10));
+		Foo high = new Foo() {};
+		bundleContext.registerService(Foo.class, high, dictionaryOf(Constants.SERVICE_RANKING, 10));
+
+		assertThat(fooServiceAware.serviceAsync()).isDone()
+			.hasSameValue(high);
+		assertThat(fooServiceAware.servicesAsync(2)).isDone()
+			.hasValueMatching(services -> services.equals(Arrays.asList(low, high)));
+		Assertions.assertThat(fooServiceAware.getServices()).containsExactly(low, high);
+	}
+
+	@Test
+	public void testServicesAsyncAlreadySatisfied() throws Exception {
+		assertThat(fooServiceAware.servicesAsync(0)).isDone()
+			.hasValueMatching(List::isEmpty);
+	}
+
+	@Test
+	public void testServicesAsyncNegativeCount() throws Exception {
+		assertThatIllegalArgumentException().isThrownBy(() -> fooServiceAware.servicesAsync(-1));
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) OSGi Alliance (2020). All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.osgi.test.junit5.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.test.common.annotation.InjectService;
+import org.osgi.test.common.annotation.InjectService.Scope;
+import org.osgi.test.common.dictionary.Dictionaries;
+import org.osgi.test.common.service.ServiceAware;
+import org.osgi.test.junit5.types.Foo;
+
+@ExtendWith(ServiceExtension.class)
+public class ClassScopedServiceTest {
+
+	private static ServiceRegistration<Foo>					registration;
+	private static final AtomicReference<ServiceAware<Foo>>	classScoped		= new AtomicReference<>();
+	private static final AtomicReference<ServiceAware<Foo>>	methodScoped	= new AtomicReference<>();
+
+	@BeforeAll
+	public static void beforeAll() {
+		// We can't use the @InjectBundleContext because we're testing the test
+		// support
+		BundleContext bundleContext = FrameworkUtil.getBundle(ClassScopedServiceTest.class)
+			.getBundleContext();
+		registration = bundleContext.registerService(Foo.class, new Foo() {},
+			Dictionaries.dictionaryOf("test", ClassScopedServiceTest.class.getSimpleName()));
+	}
+
+	@AfterAll
+	public static void afterAll() {
+		classScoped.set(null);
+		methodScoped.set(null);
+		registration.unregister();
+	}
+
+	@InjectService(scope = Scope.CLASS)
+	ServiceAware<Foo>	fClassScoped;
+
+	@InjectService
+	ServiceAware<Foo>	fMethodScoped;
+
+	@RepeatedTest(3)
+	public void testClassScopedTrackerIsReused() throws Exception {
+		assertThat(fClassScoped.getService()).isNotNull();
+		if (!classScoped.compareAndSet(null, fClassScoped)) {
+			assertThat(fClassScoped).isSameAs(classScoped.get());
+		}
+	}
+
+	@RepeatedTest(3)
+	public void testMethodScopedTrackerIsNotReused() throws Exception {
+		assertThat(fMethodScoped.getService()).isNotNull();
+		assertThat(fMethodScoped).isNotSameAs(fClassScoped);
+		ServiceAware<Foo> previous = methodScoped.getAndSet(fMethodScoped);
+		if (previous != null) {
+			assertThat(fMethodScoped).isNotSameAs(previous);
+		}
+	}
+
+}
@@ -183,6 +183,29 @@ public class ServiceExtensionTest extends AbstractServiceExtensionTest {
 		assertThat(TestBase.lastService.get()).isNull();
 	}
 
+	static class ServiceWithMultipleFields extends TestBase {
+		@InjectService(timeout = 500)
+		Foo	foo;
+
+		@InjectService(filter = FILTER, timeout = 500)
+		Foo	filteredFoo;
+
+		@Override
+		Foo getService() {
+			return foo;
+		}
+	}
+
+	@Test
+	public void requiredFailsForEveryMissingField() throws Exception {
+		assertThatTest(ServiceWithMultipleFields.class).isInstanceOf(AssertionError.class)
+			.hasMessageStartingWith("2 injection points failed")
+			.hasMessageContaining("1/1 services (objectClass=org.osgi.test.junit5.types.Foo) didn't arrive within 500ms")
+			.hasMessageContaining(FILTER)
+			.satisfies(e -> assertThat(e.getSuppressed()).hasSize(2));
+		assertThat(TestBase.lastService.get()).isNull();
+	}
+
 	static class ServiceWithMalformedFilter extends TestBase {
 		@InjectService(filter = MALFORMED_FILTER)
 		Foo foo;